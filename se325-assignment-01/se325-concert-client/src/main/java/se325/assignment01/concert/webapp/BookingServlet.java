@@ -13,13 +13,19 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class BookingServlet extends HttpServlet {
@@ -27,6 +33,9 @@ public class BookingServlet extends HttpServlet {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
     private static final Logger LOGGER = LoggerFactory.getLogger(BookingServlet.class);
 
+    // Booked seats for each concert date, as last fetched
+    private final Map<LocalDateTime, CachedSeats> bookedSeatsCache = new ConcurrentHashMap<>();
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
@@ -57,9 +66,7 @@ public class BookingServlet extends HttpServlet {
             }
 
             // Go get the already-booked seats from the web service, so we can mark them as such on the app.
-            List<SeatDTO> bookedSeats = wsClient.target(Config.WEB_SERVICE_URI + "/seats/" + FORMATTER.format(date) + "?status=Booked")
-                    .request().get(new GenericType<List<SeatDTO>>() {
-                    });
+            List<SeatDTO> bookedSeats = getBookedSeats(wsClient, date);
             LOGGER.info("doGet(): bookedSeats size = " + bookedSeats.size());
 
 //             TEST
@@ -81,4 +88,41 @@ public class BookingServlet extends HttpServlet {
             wsClient.close();
         }
     }
+
+    /**
+     * Gets the booked seats for a concert date. The last response for each date is kept along with its ETag, and
+     * only fetched again if the web service says the seats have changed.
+     */
+    private List<SeatDTO> getBookedSeats(Client wsClient, LocalDateTime date) {
+        CachedSeats cached = bookedSeatsCache.get(date);
+
+        Invocation.Builder request = wsClient.target(Config.WEB_SERVICE_URI + "/seats/" + FORMATTER.format(date) + "?status=Booked")
+                .request();
+        if (cached != null)
+            request.header(HttpHeaders.IF_NONE_MATCH, cached.etag);
+
+        Response response = request.get();
+        try {
+            if (cached != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode())
+                return cached.seats;
+
+            List<SeatDTO> seats = response.readEntity(new GenericType<List<SeatDTO>>() {
+            });
+            if (response.getEntityTag() != null)
+                bookedSeatsCache.put(date, new CachedSeats(response.getEntityTag(), seats));
+            return seats;
+        } finally {
+            response.close();
+        }
+    }
+
+    private static class CachedSeats {
+        private final EntityTag etag;
+        private final List<SeatDTO> seats;
+
+        private CachedSeats(EntityTag etag, List<SeatDTO> seats) {
+            this.etag = etag;
+            this.seats = seats;
+        }
+    }
 }
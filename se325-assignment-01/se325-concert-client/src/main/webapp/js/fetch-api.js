@@ -14,6 +14,10 @@ export const FetchAPI = {
         return fetch(`${WEB_URI}/concerts/${id}`);
     },
 
+    openSeatStream(date) {
+        return new EventSource(`${WEB_URI}/seats/${date}/events`);
+    },
+
     makeBookingRequest(bookingRequest) {
         return this.post(`${WEB_URI}/bookings`, bookingRequest);
     },
@@ -17,6 +17,11 @@ export function initSeatBookingPage(concertId, concertDate) {
     // Setup "buy" button
     document.querySelector("#button-book").addEventListener("click", handleBookButtonClicked);
 
+    // Grey out seats as other people book them, rather than finding out at checkout
+    const seatStream = FetchAPI.openSeatStream(concertDate);
+    seatStream.addEventListener("seats", handleSeatsChanged);
+    window.addEventListener("beforeunload", () => seatStream.close());
+
     /**
      * Whenever a seat is clicked, if that seat isn't already booked, toggle its "held" status.
      */
@@ -31,6 +36,24 @@ export function initSeatBookingPage(concertId, concertDate) {
         }
     }
 
+    /**
+     * Whenever seats are booked or unbooked, mark them as such. A seat being held that has been booked by someone
+     * else is let go.
+     */
+    function handleSeatsChanged(event) {
+        const change = JSON.parse(event.data);
+
+        const booked = SeatData.getSeatsByLabel(seats, ...change.bookedSeats.map(seat => seat.label))
+            .filter(seat => !seat.isBooked);
+        const unbooked = SeatData.getSeatsByLabel(seats, ...change.unbookedSeats.map(seat => seat.label))
+            .filter(seat => seat.isBooked);
+
+        SeatUI.toggleHeld(...booked.filter(seat => seat.isHeld));
+        SeatUI.toggleBooked(...booked, ...unbooked);
+
+        displayTotals();
+    }
+
     /**
      * Updates the #selected-seat-price and #selected-seat-labels spans with the correct info.
      */
@@ -0,0 +1,97 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents how full a performance (a concert on a particular date) is.
+ * concertId            the id of the concert
+ * date                 the date of the performance
+ * numSeats             the number of seats at the performance
+ * numBooked            the number of seats which are booked
+ * percentageBooked     the percentage of seats which are booked, rounded down
+ * priceBands           the number of seats booked in each price band
+ */
+public class AvailabilitySummaryDTO {
+
+    private long concertId;
+
+    private LocalDateTime date;
+
+    private int numSeats;
+
+    private int numBooked;
+
+    private int percentageBooked;
+
+    private List<PriceBandAvailabilityDTO> priceBands = new ArrayList<>();
+
+    public AvailabilitySummaryDTO() {
+    }
+
+    public AvailabilitySummaryDTO(long concertId, LocalDateTime date, int numSeats, int numBooked, int percentageBooked, List<PriceBandAvailabilityDTO> priceBands) {
+        this.concertId = concertId;
+        this.date = date;
+        this.numSeats = numSeats;
+        this.numBooked = numBooked;
+        this.percentageBooked = percentageBooked;
+        this.priceBands = priceBands;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    // Added annotations for custom serializer/deserializer
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public void setNumSeats(int numSeats) {
+        this.numSeats = numSeats;
+    }
+
+    public int getNumBooked() {
+        return numBooked;
+    }
+
+    public void setNumBooked(int numBooked) {
+        this.numBooked = numBooked;
+    }
+
+    public int getPercentageBooked() {
+        return percentageBooked;
+    }
+
+    public void setPercentageBooked(int percentageBooked) {
+        this.percentageBooked = percentageBooked;
+    }
+
+    public List<PriceBandAvailabilityDTO> getPriceBands() {
+        return priceBands;
+    }
+
+    public void setPriceBands(List<PriceBandAvailabilityDTO> priceBands) {
+        this.priceBands = priceBands;
+    }
+}
@@ -0,0 +1,51 @@
+package se325.assignment01.concert.common.dto;
+
+import se325.assignment01.concert.common.types.BookingOutcome;
+
+/**
+ * Represents a booking which was submitted to be made asynchronously.
+ * id                   the id of the attempt
+ * outcome              whether the booking was made, or why not. Null while the booking is still waiting to be made
+ * bookingLocation      the URI of the booking, if it was made
+ */
+public class BookingAttemptDTO {
+
+    private String id;
+
+    private BookingOutcome outcome;
+
+    private String bookingLocation;
+
+    public BookingAttemptDTO() {
+    }
+
+    public BookingAttemptDTO(String id, BookingOutcome outcome, String bookingLocation) {
+        this.id = id;
+        this.outcome = outcome;
+        this.bookingLocation = bookingLocation;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public BookingOutcome getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(BookingOutcome outcome) {
+        this.outcome = outcome;
+    }
+
+    public String getBookingLocation() {
+        return bookingLocation;
+    }
+
+    public void setBookingLocation(String bookingLocation) {
+        this.bookingLocation = bookingLocation;
+    }
+}
@@ -0,0 +1,39 @@
+package se325.assignment01.concert.common.dto;
+
+import se325.assignment01.concert.common.types.BookingOutcome;
+
+/**
+ * Represents what happened to one booking request in a batch of bookings.
+ * outcome      whether the booking was made, or why not
+ * bookingId    the id of the booking, if it was made
+ */
+public class BookingOutcomeDTO {
+
+    private BookingOutcome outcome;
+
+    private Long bookingId;
+
+    public BookingOutcomeDTO() {
+    }
+
+    public BookingOutcomeDTO(BookingOutcome outcome, Long bookingId) {
+        this.outcome = outcome;
+        this.bookingId = bookingId;
+    }
+
+    public BookingOutcome getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(BookingOutcome outcome) {
+        this.outcome = outcome;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+}
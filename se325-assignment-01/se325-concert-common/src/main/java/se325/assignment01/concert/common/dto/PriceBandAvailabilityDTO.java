@@ -0,0 +1,63 @@
+package se325.assignment01.concert.common.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Represents how many seats in one price band of a performance have been booked.
+ * priceBand    the name of the price band, e.g. "Gold Seating"
+ * price        the price of each seat in the band
+ * numSeats     the number of seats in the band
+ * numBooked    the number of seats in the band which are booked
+ */
+public class PriceBandAvailabilityDTO {
+
+    private String priceBand;
+
+    private BigDecimal price;
+
+    private int numSeats;
+
+    private int numBooked;
+
+    public PriceBandAvailabilityDTO() {
+    }
+
+    public PriceBandAvailabilityDTO(String priceBand, BigDecimal price, int numSeats, int numBooked) {
+        this.priceBand = priceBand;
+        this.price = price;
+        this.numSeats = numSeats;
+        this.numBooked = numBooked;
+    }
+
+    public String getPriceBand() {
+        return priceBand;
+    }
+
+    public void setPriceBand(String priceBand) {
+        this.priceBand = priceBand;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public void setNumSeats(int numSeats) {
+        this.numSeats = numSeats;
+    }
+
+    public int getNumBooked() {
+        return numBooked;
+    }
+
+    public void setNumBooked(int numBooked) {
+        this.numBooked = numBooked;
+    }
+}
@@ -0,0 +1,64 @@
+package se325.assignment01.concert.common.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the seats of a performance which have been booked or freed since a version of its seat availability.
+ * sinceVersion     the version the client already had
+ * version          the version these changes bring the client up to
+ * bookedSeats      seats which are now booked
+ * unbookedSeats    seats which are now unbooked
+ */
+public class SeatAvailabilityDeltaDTO {
+
+    private long sinceVersion;
+
+    private long version;
+
+    private List<SeatDTO> bookedSeats = new ArrayList<>();
+
+    private List<SeatDTO> unbookedSeats = new ArrayList<>();
+
+    public SeatAvailabilityDeltaDTO() {
+    }
+
+    public SeatAvailabilityDeltaDTO(long sinceVersion, long version, List<SeatDTO> bookedSeats, List<SeatDTO> unbookedSeats) {
+        this.sinceVersion = sinceVersion;
+        this.version = version;
+        this.bookedSeats = bookedSeats;
+        this.unbookedSeats = unbookedSeats;
+    }
+
+    public long getSinceVersion() {
+        return sinceVersion;
+    }
+
+    public void setSinceVersion(long sinceVersion) {
+        this.sinceVersion = sinceVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<SeatDTO> getBookedSeats() {
+        return bookedSeats;
+    }
+
+    public void setBookedSeats(List<SeatDTO> bookedSeats) {
+        this.bookedSeats = bookedSeats;
+    }
+
+    public List<SeatDTO> getUnbookedSeats() {
+        return unbookedSeats;
+    }
+
+    public void setUnbookedSeats(List<SeatDTO> unbookedSeats) {
+        this.unbookedSeats = unbookedSeats;
+    }
+}
@@ -0,0 +1,86 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents seats which are temporarily held for a user, so they can't be booked by anyone else until the hold
+ * is confirmed into a booking or expires.
+ * id           the id of the hold
+ * concertId    the id of the concert the seats are held for
+ * date         the date of the performance the seats are held for
+ * seatLabels   the seats which are held
+ * ttlSeconds   how many seconds are left before the hold expires
+ */
+public class SeatHoldDTO {
+
+    private String id;
+
+    private long concertId;
+
+    private LocalDateTime date;
+
+    private List<String> seatLabels = new ArrayList<>();
+
+    private long ttlSeconds;
+
+    public SeatHoldDTO() {
+    }
+
+    public SeatHoldDTO(String id, long concertId, LocalDateTime date, List<String> seatLabels, long ttlSeconds) {
+        this.id = id;
+        this.concertId = concertId;
+        this.date = date;
+        this.seatLabels = seatLabels;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    // Added annotations for custom serializer/deserializer
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public List<String> getSeatLabels() {
+        return seatLabels;
+    }
+
+    public void setSeatLabels(List<String> seatLabels) {
+        this.seatLabels = seatLabels;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+}
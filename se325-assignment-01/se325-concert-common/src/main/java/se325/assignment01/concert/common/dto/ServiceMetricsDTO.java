@@ -0,0 +1,186 @@
+package se325.assignment01.concert.common.dto;
+
+/**
+ * Represents the state of the concert service's background work.
+ * notificationQueueDepth        the number of notification tasks waiting for a thread
+ * notificationActiveThreads     the number of threads running a notification task
+ * notificationsCompleted        the number of notification tasks that have finished
+ * notificationsRunOnCaller      the number of notification tasks run by a request thread as the queue was full
+ * notificationTriggers          the number of booking changes reported to the notification dispatcher
+ * notificationEvaluations       the number of times the dispatcher has looked at a performance's subscribers
+ * subscribersNotified           the number of subscribers notified
+ * liveSubscribers               the number of subscribers waiting to be notified
+ * bookingEventsPublished        the number of bookings shared with other service instances
+ * bookingEventBatchesPublished  the number of batches the shared bookings were sent in
+ * bookingEventsReceived         the number of bookings received from other service instances
+ * authTokenCacheHits            the number of authenticated requests whose token was remembered
+ * authTokenCacheMisses          the number of authenticated requests whose token was looked up in the database
+ * authTokenCacheEvictions       the number of remembered tokens dropped as they expired or to make room
+ * asyncBookingQueueDepth        the number of asynchronous bookings waiting for a worker
+ * asyncBookingsRejected         the number of asynchronous bookings turned away as the queue was full
+ */
+public class ServiceMetricsDTO {
+
+    private int notificationQueueDepth;
+
+    private int notificationActiveThreads;
+
+    private long notificationsCompleted;
+
+    private long notificationsRunOnCaller;
+
+    private long notificationTriggers;
+
+    private long notificationEvaluations;
+
+    private long subscribersNotified;
+
+    private int liveSubscribers;
+
+    private long bookingEventsPublished;
+
+    private long bookingEventBatchesPublished;
+
+    private long bookingEventsReceived;
+
+    private long authTokenCacheHits;
+
+    private long authTokenCacheMisses;
+
+    private long authTokenCacheEvictions;
+
+    private int asyncBookingQueueDepth;
+
+    private long asyncBookingsRejected;
+
+    public ServiceMetricsDTO() {
+    }
+
+    public int getNotificationQueueDepth() {
+        return notificationQueueDepth;
+    }
+
+    public void setNotificationQueueDepth(int notificationQueueDepth) {
+        this.notificationQueueDepth = notificationQueueDepth;
+    }
+
+    public int getNotificationActiveThreads() {
+        return notificationActiveThreads;
+    }
+
+    public void setNotificationActiveThreads(int notificationActiveThreads) {
+        this.notificationActiveThreads = notificationActiveThreads;
+    }
+
+    public long getNotificationsCompleted() {
+        return notificationsCompleted;
+    }
+
+    public void setNotificationsCompleted(long notificationsCompleted) {
+        this.notificationsCompleted = notificationsCompleted;
+    }
+
+    public long getNotificationsRunOnCaller() {
+        return notificationsRunOnCaller;
+    }
+
+    public void setNotificationsRunOnCaller(long notificationsRunOnCaller) {
+        this.notificationsRunOnCaller = notificationsRunOnCaller;
+    }
+
+    public long getNotificationTriggers() {
+        return notificationTriggers;
+    }
+
+    public void setNotificationTriggers(long notificationTriggers) {
+        this.notificationTriggers = notificationTriggers;
+    }
+
+    public long getNotificationEvaluations() {
+        return notificationEvaluations;
+    }
+
+    public void setNotificationEvaluations(long notificationEvaluations) {
+        this.notificationEvaluations = notificationEvaluations;
+    }
+
+    public long getSubscribersNotified() {
+        return subscribersNotified;
+    }
+
+    public void setSubscribersNotified(long subscribersNotified) {
+        this.subscribersNotified = subscribersNotified;
+    }
+
+    public int getLiveSubscribers() {
+        return liveSubscribers;
+    }
+
+    public void setLiveSubscribers(int liveSubscribers) {
+        this.liveSubscribers = liveSubscribers;
+    }
+
+    public long getBookingEventsPublished() {
+        return bookingEventsPublished;
+    }
+
+    public void setBookingEventsPublished(long bookingEventsPublished) {
+        this.bookingEventsPublished = bookingEventsPublished;
+    }
+
+    public long getBookingEventBatchesPublished() {
+        return bookingEventBatchesPublished;
+    }
+
+    public void setBookingEventBatchesPublished(long bookingEventBatchesPublished) {
+        this.bookingEventBatchesPublished = bookingEventBatchesPublished;
+    }
+
+    public long getBookingEventsReceived() {
+        return bookingEventsReceived;
+    }
+
+    public void setBookingEventsReceived(long bookingEventsReceived) {
+        this.bookingEventsReceived = bookingEventsReceived;
+    }
+
+    public long getAuthTokenCacheHits() {
+        return authTokenCacheHits;
+    }
+
+    public void setAuthTokenCacheHits(long authTokenCacheHits) {
+        this.authTokenCacheHits = authTokenCacheHits;
+    }
+
+    public long getAuthTokenCacheMisses() {
+        return authTokenCacheMisses;
+    }
+
+    public void setAuthTokenCacheMisses(long authTokenCacheMisses) {
+        this.authTokenCacheMisses = authTokenCacheMisses;
+    }
+
+    public long getAuthTokenCacheEvictions() {
+        return authTokenCacheEvictions;
+    }
+
+    public void setAuthTokenCacheEvictions(long authTokenCacheEvictions) {
+        this.authTokenCacheEvictions = authTokenCacheEvictions;
+    }
+
+    public int getAsyncBookingQueueDepth() {
+        return asyncBookingQueueDepth;
+    }
+
+    public void setAsyncBookingQueueDepth(int asyncBookingQueueDepth) {
+        this.asyncBookingQueueDepth = asyncBookingQueueDepth;
+    }
+
+    public long getAsyncBookingsRejected() {
+        return asyncBookingsRejected;
+    }
+
+    public void setAsyncBookingsRejected(long asyncBookingsRejected) {
+        this.asyncBookingsRejected = asyncBookingsRejected;
+    }
+}
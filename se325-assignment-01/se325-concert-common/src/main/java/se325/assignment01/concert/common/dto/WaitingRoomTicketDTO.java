@@ -0,0 +1,96 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a user's place in the waiting room of a performance. Once admitted, the token is sent in the
+ * Waiting-Room-Token header to get the performance's seats and book them.
+ * token                    the user's token
+ * concertId                the id of the concert
+ * date                     the date of the performance
+ * position                 the number of users ahead in the queue, 0 once admitted
+ * admitted                 whether the token has been admitted
+ * estimatedWaitSeconds     roughly how long until the token is admitted
+ */
+public class WaitingRoomTicketDTO {
+
+    private String token;
+
+    private long concertId;
+
+    private LocalDateTime date;
+
+    private long position;
+
+    private boolean admitted;
+
+    private long estimatedWaitSeconds;
+
+    public WaitingRoomTicketDTO() {
+    }
+
+    public WaitingRoomTicketDTO(String token, long concertId, LocalDateTime date, long position, boolean admitted, long estimatedWaitSeconds) {
+        this.token = token;
+        this.concertId = concertId;
+        this.date = date;
+        this.position = position;
+        this.admitted = admitted;
+        this.estimatedWaitSeconds = estimatedWaitSeconds;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    // Added annotations for custom serializer/deserializer
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public boolean isAdmitted() {
+        return admitted;
+    }
+
+    public void setAdmitted(boolean admitted) {
+        this.admitted = admitted;
+    }
+
+    public long getEstimatedWaitSeconds() {
+        return estimatedWaitSeconds;
+    }
+
+    public void setEstimatedWaitSeconds(long estimatedWaitSeconds) {
+        this.estimatedWaitSeconds = estimatedWaitSeconds;
+    }
+}
@@ -0,0 +1,143 @@
+package se325.assignment01.concert.service.admission;
+
+import se325.assignment01.concert.service.util.BoundedTtlCache;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A queue of users waiting to see and book the seats of a single performance. Each user joining gets a token
+ * and the next ticket number, and tickets are admitted in order at a steady rate by a token bucket.
+ * <p>
+ * Everything is lock-free. Ticket numbers come from an atomic counter, and the bucket's state (the highest
+ * admitted ticket, the tokens left and when it was last topped up) is a single immutable object swapped with
+ * compare-and-set. Admission is worked out when someone asks rather than on a timer, and a user's position is
+ * just their ticket number minus the highest admitted ticket.
+ * <p>
+ * Each user holds one ticket at a time, and once the room holds its most tickets (see
+ * {@link ServiceConfig#WAITING_ROOM_MAX_TOKENS}) nobody else can join until some expire. Tickets are never dropped
+ * to make room, as that would drop the users who have waited longest.
+ */
+public class WaitingRoom {
+
+    private final long concertId;
+    private final LocalDateTime date;
+    private final double tokensPerNano;
+    private final double burst;
+
+    private final AtomicLong lastTicket = new AtomicLong();
+    private final AtomicReference<Bucket> bucket;
+    private final BoundedTtlCache<String, Long> tickets = new BoundedTtlCache<>(
+            ServiceConfig.WAITING_ROOM_MAX_TOKENS, ServiceConfig.WAITING_ROOM_TOKEN_TTL_SECONDS, TimeUnit.SECONDS);
+
+    // Each user's token. Written just before the token's ticket, so it expires no later than the ticket does
+    private final BoundedTtlCache<Long, String> userTokens = new BoundedTtlCache<>(
+            ServiceConfig.WAITING_ROOM_MAX_TOKENS, ServiceConfig.WAITING_ROOM_TOKEN_TTL_SECONDS, TimeUnit.SECONDS);
+
+    /**
+     * @param concertId The concert
+     * @param date Date of the performance
+     * @param admitPerSecond How many users are admitted a second
+     * @param burst Most users admitted at once, after nobody has been waiting for a while
+     */
+    public WaitingRoom(long concertId, LocalDateTime date, double admitPerSecond, int burst) {
+        this.concertId = concertId;
+        this.date = date;
+        this.tokensPerNano = admitPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.bucket = new AtomicReference<>(new Bucket(0, burst, System.nanoTime()));
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Joins the back of the queue, unless the user is already in it
+     * @param userId The user joining
+     * @return The user's token, which is the one they already hold if they have joined before and it hasn't
+     * expired, or null if the room is full
+     */
+    public String join(long userId) {
+        String token = UUID.randomUUID().toString();
+        String existing = userTokens.putIfAbsent(userId, token);
+        if (existing != null)
+            return existing;
+
+        // Settle the bucket first, so tokens that built up while the queue was empty don't count towards this ticket.
+        // The ticket number is only taken once there is room, so a refused user doesn't hold up those behind them
+        admit();
+        if (!tickets.putIfRoom(token, lastTicket::incrementAndGet)) {
+            userTokens.remove(userId, token);
+            return null;
+        }
+        return token;
+    }
+
+    /**
+     * Gets how many users are ahead of a token in the queue
+     * @param token A token from {@link #join()}
+     * @return The number of users ahead, 0 once the token has been admitted, or -1 if the token is unknown or expired
+     */
+    public long positionOf(String token) {
+        Long ticket = tickets.get(token);
+        if (ticket == null)
+            return -1;
+        return Math.max(0, ticket - admit());
+    }
+
+    public boolean isAdmitted(String token) {
+        return positionOf(token) == 0;
+    }
+
+    /**
+     * Estimates how long until a position in the queue is admitted
+     * @param position A position from {@link #positionOf(String)}
+     * @return The wait, in whole seconds
+     */
+    public long estimateWaitSeconds(long position) {
+        return (long) Math.ceil(position / (tokensPerNano * TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    // Tops up the bucket and admits as many waiting tickets as there are tokens for
+    private long admit() {
+        while (true) {
+            Bucket current = bucket.get();
+            long now = System.nanoTime();
+            double tokens = current.tokens + (now - current.toppedUpAt) * tokensPerNano;
+            long waiting = lastTicket.get() - current.admittedUpTo;
+            long admitted = (long) Math.min(tokens, waiting);
+
+            // Nothing to admit. The tokens can be worked out again next time so there's no need to write them back,
+            // unless they have outgrown the burst with nobody waiting
+            if (admitted <= 0 && (waiting > 0 || tokens <= burst))
+                return current.admittedUpTo;
+
+            // Users who were waiting take every token that built up meanwhile, only what's left over is capped
+            Bucket next = new Bucket(current.admittedUpTo + admitted, Math.min(burst, tokens - admitted), now);
+            if (bucket.compareAndSet(current, next))
+                return next.admittedUpTo;
+        }
+    }
+
+    private static class Bucket {
+
+        private final long admittedUpTo;
+        private final double tokens;
+        private final long toppedUpAt;
+
+        private Bucket(long admittedUpTo, double tokens, long toppedUpAt) {
+            this.admittedUpTo = admittedUpTo;
+            this.tokens = tokens;
+            this.toppedUpAt = toppedUpAt;
+        }
+    }
+}
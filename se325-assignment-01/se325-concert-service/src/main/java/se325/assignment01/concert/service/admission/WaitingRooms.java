@@ -0,0 +1,71 @@
+package se325.assignment01.concert.service.admission;
+
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton class that holds a {@link WaitingRoom} for each performance, created when the first user joins it.
+ * <p>
+ * When the waiting room is enabled (see {@link ServiceConfig#WAITING_ROOM_ENABLED}) only users whose token has
+ * been admitted may get a performance's seats or book them.
+ */
+public class WaitingRooms {
+
+    private static WaitingRooms _instance = null;
+
+    private final Map<LocalDateTime, WaitingRoom> rooms = new ConcurrentHashMap<>();
+
+    protected WaitingRooms() {}
+
+    public static synchronized WaitingRooms instance() {
+        if (_instance == null) {
+            _instance = new WaitingRooms();
+        }
+        return _instance;
+    }
+
+    /**
+     * Gets the waiting room of a performance, creating it if needed
+     * @param concertId The concert
+     * @param date Date of the performance
+     * @return The waiting room, or null if the concert isn't on that date
+     */
+    public WaitingRoom forPerformance(long concertId, LocalDateTime date) {
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+        if (performance == null || performance.getConcertId() != concertId)
+            return null;
+
+        return rooms.computeIfAbsent(date, d -> new WaitingRoom(concertId, d,
+                ServiceConfig.WAITING_ROOM_ADMIT_PER_SECOND, ServiceConfig.WAITING_ROOM_BURST));
+    }
+
+    /**
+     * Checks whether one of the given tokens lets its holder into a performance
+     * @param date Date of the performance
+     * @param tokens Tokens sent by the user, separated by commas, or null if none were sent
+     * @return true if the waiting room is disabled, or one of the tokens has been admitted to the performance
+     */
+    public boolean isAdmitted(LocalDateTime date, String tokens) {
+        if (!ServiceConfig.WAITING_ROOM_ENABLED)
+            return true;
+
+        WaitingRoom room = rooms.get(date);
+        if (room == null || tokens == null)
+            return false;
+
+        for (String token : tokens.split(",")) {
+            if (room.isAdmitted(token.trim()))
+                return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        rooms.clear();
+    }
+}
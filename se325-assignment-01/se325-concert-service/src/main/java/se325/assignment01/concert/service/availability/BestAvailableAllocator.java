@@ -0,0 +1,112 @@
+package se325.assignment01.concert.service.availability;
+
+import se325.assignment01.concert.service.util.VenueLayout;
+
+/**
+ * Chooses and claims the best available seats in a price band, so clients can ask for "N seats" rather than
+ * guessing exact labels that someone else may take first.
+ * <p>
+ * Seats next to each other in the same row are preferred, nearest the front and then nearest the centre of the row.
+ * Each row is searched with a few operations on its occupancy bitmask rather than seat by seat. If no row has
+ * enough adjacent seats, the frontmost free seats in the band are used instead.
+ */
+public class BestAvailableAllocator {
+
+    // Another request can take the chosen seats between choosing and claiming them, in which case we choose again
+    private static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * Chooses and claims seats
+     * @param performance The performance to book
+     * @param priceBandIndex Index of the price band in {@link VenueLayout#getPriceBands()}
+     * @param numSeats How many seats are wanted, at most the number of seats in the band
+     * @return The claimed seat indexes, or null if there aren't enough free seats in the band
+     */
+    public static int[] allocate(PerformanceSeats performance, int priceBandIndex, int numSeats) {
+        if (numSeats <= 0 || numSeats > performance.getLayout().getNumSeats(priceBandIndex))
+            return null;
+
+        int[] rows = performance.getLayout().rowsOfBand(priceBandIndex);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int[] seatIndexes = chooseAdjacent(performance, rows, numSeats);
+            if (seatIndexes == null)
+                seatIndexes = chooseAny(performance, rows, numSeats);
+            if (seatIndexes == null)
+                return null;
+
+            if (performance.claim(seatIndexes))
+                return seatIndexes;
+        }
+        return null;
+    }
+
+    private static int[] chooseAdjacent(PerformanceSeats performance, int[] rows, int numSeats) {
+        VenueLayout layout = performance.getLayout();
+
+        for (int row : rows) {
+            int rowLength = layout.rowLength(row);
+            if (numSeats > rowLength)
+                continue;
+
+            long runs = runStarts(~performance.rowOccupancy(row) & rowMask(rowLength), numSeats);
+            if (runs == 0)
+                continue;
+
+            int centreStart = (rowLength - numSeats) / 2;
+
+            // Pick the run starting closest to the centre of the row
+            int bestStart = -1;
+            for (long r = runs; r != 0; r &= r - 1) {
+                int start = Long.numberOfTrailingZeros(r);
+                if (bestStart < 0 || Math.abs(start - centreStart) < Math.abs(bestStart - centreStart))
+                    bestStart = start;
+            }
+
+            int[] seatIndexes = new int[numSeats];
+            for (int i = 0; i < numSeats; i++) {
+                seatIndexes[i] = layout.rowFirstSeat(row) + bestStart + i;
+            }
+            return seatIndexes;
+        }
+        return null;
+    }
+
+    private static int[] chooseAny(PerformanceSeats performance, int[] rows, int numSeats) {
+        VenueLayout layout = performance.getLayout();
+        int[] seatIndexes = new int[numSeats];
+        int count = 0;
+
+        for (int r = 0; r < rows.length && count < numSeats; r++) {
+            long free = ~performance.rowOccupancy(rows[r]) & rowMask(layout.rowLength(rows[r]));
+            for (; free != 0 && count < numSeats; free &= free - 1) {
+                seatIndexes[count++] = layout.rowFirstSeat(rows[r]) + Long.numberOfTrailingZeros(free);
+            }
+        }
+
+        return count == numSeats ? seatIndexes : null;
+    }
+
+    private static long rowMask(int rowLength) {
+        return rowLength == Long.SIZE ? -1L : (1L << rowLength) - 1;
+    }
+
+    /**
+     * Finds where runs of free seats start. Bit i of the result is set if seats i to i + length - 1 are all free.
+     * The run length doubles each step, so this takes O(log length) operations whatever the row's occupancy.
+     * @param free Bitmask of free seats in a row
+     * @param length Length of run wanted
+     */
+    static long runStarts(long free, int length) {
+        long runs = free;
+        int covered = 1;
+        while (covered < length) {
+            int shift = Math.min(covered, length - covered);
+            runs &= runs >>> shift;
+            covered += shift;
+        }
+        return runs;
+    }
+
+    private BestAvailableAllocator() {}
+}
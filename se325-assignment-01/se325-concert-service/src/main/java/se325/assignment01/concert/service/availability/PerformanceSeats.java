@@ -0,0 +1,331 @@
+package se325.assignment01.concert.service.availability;
+
+import se325.assignment01.concert.common.types.BookingStatus;
+import se325.assignment01.concert.service.util.ServiceConfig;
+import se325.assignment01.concert.service.util.VenueLayout;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory record of which seats are taken for a single performance (a concert on a particular date).
+ * Each seat in the venue is represented by one bit of an atomic word array, indexed by the seat's
+ * {@link VenueLayout} seat index. Seats are claimed with compare-and-set so concurrent bookings never
+ * need a database lock to find out who won. The SEATS table is still the durable record, this is only a view of it.
+ * <p>
+ * A seat's bit is set as soon as it is claimed (by a booking in progress or a hold). Separately, counters of the
+ * seats in committed bookings are kept for the whole performance and for each price band, so fill levels can be
+ * read without counting seats.
+ * <p>
+ * Every claim and release is recorded in a {@link SeatChangeLog}, which gives the performance's availability a
+ * version that increases with each change.
+ */
+public class PerformanceSeats {
+
+    private static final int WORD_BITS = Long.SIZE;
+
+    private final long concertId;
+    private final LocalDateTime date;
+    private final VenueLayout layout;
+    private final AtomicLongArray taken;
+    private final AtomicInteger numBooked = new AtomicInteger();
+    private final AtomicIntegerArray numBookedByBand;
+    private final SeatChangeLog changeLog;
+
+    public PerformanceSeats(long concertId, LocalDateTime date, VenueLayout layout) {
+        this.concertId = concertId;
+        this.date = date;
+        this.layout = layout;
+        this.taken = new AtomicLongArray((layout.getNumSeats() + WORD_BITS - 1) / WORD_BITS);
+        this.numBookedByBand = new AtomicIntegerArray(layout.getPriceBands().length);
+
+        // Versions start from the clock (in microseconds, leaving room for many changes a millisecond) so they keep
+        // increasing when the index is reloaded, and versions from before the reload are never mistaken for current ones
+        this.changeLog = new SeatChangeLog(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()),
+                ServiceConfig.SEAT_CHANGE_LOG_CAPACITY);
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public VenueLayout getLayout() {
+        return layout;
+    }
+
+    public boolean isBooked(int seatIndex) {
+        return (taken.get(seatIndex / WORD_BITS) & bit(seatIndex)) != 0;
+    }
+
+    /**
+     * Marks a seat as taken by a booking that is already committed, e.g. when loading from the database
+     */
+    public void markBooked(int seatIndex) {
+        setBits(seatIndex / WORD_BITS, bit(seatIndex));
+        numBookedByBand.incrementAndGet(layout.priceBandAt(seatIndex));
+        numBooked.incrementAndGet();
+    }
+
+    /**
+     * Updates the booked seat counters once a booking of claimed seats has been committed
+     * @param seatIndexes The booking's seats
+     */
+    public void recordBooked(int[] seatIndexes) {
+        for (int seatIndex : seatIndexes) {
+            numBookedByBand.incrementAndGet(layout.priceBandAt(seatIndex));
+        }
+        numBooked.addAndGet(seatIndexes.length);
+    }
+
+    /**
+     * Marks seats as taken by a booking committed by another service instance, so they show up as booked here too.
+     * Only seats that weren't already taken are added to the booked seat counters, so hearing of the same booking
+     * twice doesn't count it twice.
+     * @param seatIndexes The booking's seats
+     */
+    public void recordBookedElsewhere(int[] seatIndexes) {
+        for (int seatIndex : seatIndexes) {
+            long mask = bit(seatIndex);
+            if ((setBits(seatIndex / WORD_BITS, mask) & mask) == 0) {
+                numBookedByBand.incrementAndGet(layout.priceBandAt(seatIndex));
+                numBooked.incrementAndGet();
+            }
+        }
+        changeLog.append(seatIndexes);
+    }
+
+    /**
+     * Releases the seats of a committed booking that has been cancelled, taking them off the booked seat counters
+     * so they can be claimed again. Each counter and word of seats is updated once, however large the booking.
+     * @param seatIndexes The cancelled booking's seats, in ascending order
+     */
+    public void unbook(int[] seatIndexes) {
+        int[] numUnbookedByBand = new int[numBookedByBand.length()];
+        for (int seatIndex : seatIndexes) {
+            numUnbookedByBand[layout.priceBandAt(seatIndex)]++;
+        }
+        for (int band = 0; band < numUnbookedByBand.length; band++) {
+            if (numUnbookedByBand[band] > 0)
+                numBookedByBand.addAndGet(band, -numUnbookedByBand[band]);
+        }
+        numBooked.addAndGet(-seatIndexes.length);
+
+        release(seatIndexes);
+    }
+
+    /**
+     * @return Number of seats in committed bookings
+     */
+    public int getNumBooked() {
+        return numBooked.get();
+    }
+
+    /**
+     * @return Number of seats not in committed bookings
+     */
+    public int getNumRemaining() {
+        return layout.getNumSeats() - numBooked.get();
+    }
+
+    /**
+     * @param priceBandIndex Index of the price band in {@link VenueLayout#getPriceBands()}
+     * @return Number of seats in the band that are in committed bookings
+     */
+    public int getNumBooked(int priceBandIndex) {
+        return numBookedByBand.get(priceBandIndex);
+    }
+
+    /**
+     * @return Percentage of the performance's seats that are in committed bookings, rounded down
+     */
+    public int getPercentageBooked() {
+        return (int) (numBooked.get() * 100L / layout.getNumSeats());
+    }
+
+    /**
+     * @return The current version of the performance's seat availability
+     */
+    public long getVersion() {
+        return changeLog.getVersion();
+    }
+
+    /**
+     * Gets the seats that have been claimed or released since a version
+     * @param sinceVersion A version from {@link #getVersion()}
+     * @return The changes, or null if they are no longer known
+     */
+    public SeatChangeLog.Changes changesSince(long sinceVersion) {
+        return changeLog.since(sinceVersion);
+    }
+
+    /**
+     * Gets which seats in a row are taken, as a bitmask where bit 0 is the row's first seat. A row can straddle two
+     * words, in which case the two words are read separately so the result may be slightly out of date.
+     * @param row Row number in the venue, see {@link VenueLayout#rowsOfBand(int)}
+     * @return The row's occupancy
+     */
+    public long rowOccupancy(int row) {
+        int firstSeat = layout.rowFirstSeat(row);
+        int length = layout.rowLength(row);
+        int word = firstSeat / WORD_BITS;
+        int offset = firstSeat % WORD_BITS;
+
+        long bits = taken.get(word) >>> offset;
+        if (offset + length > WORD_BITS)
+            bits |= taken.get(word + 1) << (WORD_BITS - offset);
+        return length == WORD_BITS ? bits : bits & ((1L << length) - 1);
+    }
+
+    /**
+     * Atomically claims all the given seats, or none of them if any is already taken
+     * @param seatIndexes Seat indexes in ascending order, without duplicates
+     * @return true if every seat was claimed by this call
+     */
+    public boolean claim(int[] seatIndexes) {
+        int i = 0;
+        while (i < seatIndexes.length) {
+            int word = seatIndexes[i] / WORD_BITS;
+            long mask = 0;
+            while (i < seatIndexes.length && seatIndexes[i] / WORD_BITS == word) {
+                mask |= bit(seatIndexes[i++]);
+            }
+
+            if (!claimBits(word, mask)) {
+                // Hand back the words already claimed so a losing request leaves nothing behind
+                clear(Arrays.copyOf(seatIndexes, i - Long.bitCount(mask)));
+                return false;
+            }
+        }
+
+        changeLog.append(seatIndexes);
+        return true;
+    }
+
+    /**
+     * Releases seats previously claimed, e.g. when the booking they were claimed for could not be saved
+     * @param seatIndexes Seat indexes that were claimed
+     */
+    public void release(int[] seatIndexes) {
+        clear(seatIndexes);
+        changeLog.append(seatIndexes);
+    }
+
+    /**
+     * Gets the indexes of all seats with the given status, in venue order
+     * @param status Booked, Unbooked or Any
+     * @return seat indexes
+     */
+    public int[] seatIndexes(BookingStatus status) {
+        int numSeats = layout.getNumSeats();
+        int[] indexes = new int[numSeats];
+        int count = 0;
+
+        for (int word = 0; word < taken.length(); word++) {
+            long bits = taken.get(word);
+            int base = word * WORD_BITS;
+            int end = Math.min(WORD_BITS, numSeats - base);
+
+            for (int offset = 0; offset < end; offset++) {
+                boolean isBooked = (bits & (1L << offset)) != 0;
+                if (status == BookingStatus.Any || isBooked == (status == BookingStatus.Booked))
+                    indexes[count++] = base + offset;
+            }
+        }
+
+        return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Copies which seats are taken into a bitmap, where bit i of byte i / 8 is set if seat index i is taken. Each
+     * word is read separately, so seats claimed while copying may or may not be included.
+     * @return The bitmap, one bit per seat in venue order
+     */
+    public byte[] toBitmap() {
+        int numSeats = layout.getNumSeats();
+        byte[] bitmap = new byte[(numSeats + Byte.SIZE - 1) / Byte.SIZE];
+
+        for (int word = 0; word < taken.length(); word++) {
+            long bits = taken.get(word);
+            int base = word * (WORD_BITS / Byte.SIZE);
+            for (int b = 0; b < WORD_BITS / Byte.SIZE && base + b < bitmap.length; b++) {
+                bitmap[base + b] = (byte) (bits >>> (b * Byte.SIZE));
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Converts seat labels into sorted seat indexes suitable for {@link #claim(int[])}
+     * @param seatLabels Seat labels from a booking request
+     * @return seat indexes, or null if a label is not a seat in the venue or appears more than once
+     */
+    public int[] toSeatIndexes(Collection<String> seatLabels) {
+        int[] indexes = new int[seatLabels.size()];
+        int i = 0;
+        for (String label : seatLabels) {
+            int seatIndex = layout.seatIndexOf(label);
+            if (seatIndex < 0)
+                return null;
+            indexes[i++] = seatIndex;
+        }
+
+        Arrays.sort(indexes);
+        for (i = 1; i < indexes.length; i++) {
+            if (indexes[i] == indexes[i - 1])
+                return null;
+        }
+        return indexes;
+    }
+
+    // Seats next to each other in the array that share a word are cleared together
+    private void clear(int[] seatIndexes) {
+        int i = 0;
+        while (i < seatIndexes.length) {
+            int word = seatIndexes[i] / WORD_BITS;
+            long mask = 0;
+            while (i < seatIndexes.length && seatIndexes[i] / WORD_BITS == word) {
+                mask |= bit(seatIndexes[i++]);
+            }
+            clearBits(word, mask);
+        }
+    }
+
+    private static long bit(int seatIndex) {
+        return 1L << (seatIndex % WORD_BITS);
+    }
+
+    private boolean claimBits(int word, long mask) {
+        long current;
+        do {
+            current = taken.get(word);
+            if ((current & mask) != 0)
+                return false;
+        } while (!taken.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    // Returns the word as it was before the bits were set
+    private long setBits(int word, long mask) {
+        long current;
+        do {
+            current = taken.get(word);
+        } while (!taken.compareAndSet(word, current, current | mask));
+        return current;
+    }
+
+    private void clearBits(int word, long mask) {
+        long current;
+        do {
+            current = taken.get(word);
+        } while (!taken.compareAndSet(word, current, current & ~mask));
+    }
+}
@@ -0,0 +1,78 @@
+package se325.assignment01.concert.service.availability;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.util.VenueLayout;
+import se325.assignment01.concert.service.util.VenueLayouts;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton class that keeps the seat availability of every performance in memory, so seat queries can be
+ * answered without going to the database. It is loaded from the database at start-up (and whenever the
+ * database is reset). Afterwards bookings claim their seats here first, before anything is written to the database.
+ */
+public class SeatAvailabilityIndex {
+
+    private static final Logger _logger = LoggerFactory.getLogger(SeatAvailabilityIndex.class);
+    private static SeatAvailabilityIndex _instance = null;
+
+    private volatile Map<LocalDateTime, PerformanceSeats> performances = new ConcurrentHashMap<>();
+
+    protected SeatAvailabilityIndex() {}
+
+    public static synchronized SeatAvailabilityIndex instance() {
+        if (_instance == null) {
+            _instance = new SeatAvailabilityIndex();
+        }
+        return _instance;
+    }
+
+    /**
+     * Rebuilds the index from the database, replacing whatever was held before.
+     * @param em An EntityManager with no active transaction
+     */
+    public void load(EntityManager em) {
+        Map<LocalDateTime, PerformanceSeats> loaded = new ConcurrentHashMap<>();
+
+        em.getTransaction().begin();
+        List<Concert> concerts = em.createQuery("select c from Concert c", Concert.class).getResultList();
+        for (Concert c : concerts) {
+            VenueLayout layout = VenueLayouts.instance().forConcert(c.getID());
+            for (LocalDateTime date : c.getDates()) {
+                loaded.put(date, new PerformanceSeats(c.getID(), date, layout));
+            }
+        }
+
+        List<Object[]> bookedSeats = em.createQuery("select s.date, s.label from Seat s where s.isBooked = true", Object[].class)
+                .getResultList();
+        em.getTransaction().commit();
+
+        for (Object[] seat : bookedSeats) {
+            PerformanceSeats performance = loaded.get((LocalDateTime) seat[0]);
+            if (performance == null)
+                continue;
+
+            int seatIndex = performance.getLayout().seatIndexOf((String) seat[1]);
+            if (seatIndex >= 0)
+                performance.markBooked(seatIndex);
+        }
+
+        performances = loaded;
+        _logger.debug("load(): Indexed " + loaded.size() + " performances with " + bookedSeats.size() + " booked seats");
+    }
+
+    /**
+     * Gets the seats of a performance
+     * @param date Date of the performance
+     * @return The performance's seats, or null if there is no performance on that date
+     */
+    public PerformanceSeats get(LocalDateTime date) {
+        return performances.get(date);
+    }
+}
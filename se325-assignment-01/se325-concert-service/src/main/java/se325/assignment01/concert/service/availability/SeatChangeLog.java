@@ -0,0 +1,124 @@
+package se325.assignment01.concert.service.availability;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Versions the seat availability of a performance, and remembers which seats the most recent versions changed so
+ * polling clients can be sent just those seats. Every change to the performance's seats gets the next version.
+ * Only the last {@code capacity} changes are kept; older versions can't be answered and the client has to
+ * fetch all the seats again.
+ * <p>
+ * Appending is lock-free: a version is taken with an atomic increment and the change is then stored in that
+ * version's slot of a ring. A reader stops at a slot that hasn't been stored yet, and gives up if a slot has
+ * already been reused by a newer version.
+ */
+public class SeatChangeLog {
+
+    private final long initialVersion;
+    private final AtomicLong version;
+    private final AtomicReferenceArray<Change> changes;
+    private final int mask;
+
+    /**
+     * @param initialVersion Version of the seats before any changes
+     * @param capacity Number of changes to remember, rounded up to a power of two
+     */
+    public SeatChangeLog(long initialVersion, int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.initialVersion = initialVersion;
+        this.version = new AtomicLong(initialVersion);
+        this.changes = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Records a change to some seats
+     * @param seatIndexes The seats that changed
+     * @return The new version
+     */
+    public long append(int[] seatIndexes) {
+        long v = version.incrementAndGet();
+        changes.set(slot(v), new Change(v, seatIndexes));
+        return v;
+    }
+
+    /**
+     * Gets the seats that have changed since a version
+     * @param sinceVersion A version previously returned by {@link #getVersion()} or this method
+     * @return The changed seats, or null if the version is unknown or too old to be answered from the log
+     */
+    public Changes since(long sinceVersion) {
+        long current = version.get();
+        if (sinceVersion < initialVersion || sinceVersion > current || current - sinceVersion > changes.length())
+            return null;
+
+        BitSet seats = new BitSet();
+        long v = sinceVersion;
+        while (v < current) {
+            Change change = changes.get(slot(v + 1));
+
+            // Not stored yet, so the versions after it can't be read yet either
+            if (change == null || change.version < v + 1)
+                break;
+            // Already overwritten by a newer change
+            if (change.version > v + 1)
+                return null;
+
+            for (int seatIndex : change.seatIndexes) {
+                seats.set(seatIndex);
+            }
+            v++;
+        }
+
+        return new Changes(v, seats.stream().toArray());
+    }
+
+    private int slot(long v) {
+        return (int) (v & mask);
+    }
+
+    private static class Change {
+
+        private final long version;
+        private final int[] seatIndexes;
+
+        private Change(long version, int[] seatIndexes) {
+            this.version = version;
+            this.seatIndexes = seatIndexes;
+        }
+    }
+
+    /**
+     * Seats that changed between two versions
+     */
+    public static class Changes {
+
+        private final long version;
+        private final int[] seatIndexes;
+
+        private Changes(long version, int[] seatIndexes) {
+            this.version = version;
+            this.seatIndexes = seatIndexes;
+        }
+
+        /**
+         * @return The version the changes go up to
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return The changed seats, in venue order
+         */
+        public int[] getSeatIndexes() {
+            return seatIndexes;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package se325.assignment01.concert.service.availability;
+
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+
+/**
+ * Seats claimed in a {@link PerformanceSeats} on behalf of a user, which are released again if the hold isn't
+ * confirmed into a booking before it expires.
+ */
+public class SeatHold {
+
+    private final String id;
+    private final long userId;
+    private final PerformanceSeats performance;
+    private final int[] seatIndexes;
+    private final long expiresAtMillis;
+    private volatile HashedWheelTimer.Timeout expiry;
+
+    public SeatHold(String id, long userId, PerformanceSeats performance, int[] seatIndexes, long expiresAtMillis) {
+        this.id = id;
+        this.userId = userId;
+        this.performance = performance;
+        this.seatIndexes = seatIndexes;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public PerformanceSeats getPerformance() {
+        return performance;
+    }
+
+    public int[] getSeatIndexes() {
+        return seatIndexes;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    HashedWheelTimer.Timeout getExpiry() {
+        return expiry;
+    }
+
+    void setExpiry(HashedWheelTimer.Timeout expiry) {
+        this.expiry = expiry;
+    }
+}
@@ -0,0 +1,111 @@
+package se325.assignment01.concert.service.availability;
+
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that keeps track of active seat holds. A hold claims its seats in the {@link SeatAvailabilityIndex}
+ * like a booking does, so held seats show up as taken to everyone else. Expired holds are released by a single
+ * {@link HashedWheelTimer} rather than a timer per hold.
+ * <p>
+ * Removing a hold from the registry is what transfers ownership of its seats, so whichever of expiry, release
+ * or confirmation removes it first is the only one that acts on it.
+ */
+public class SeatHoldRegistry {
+
+    private static SeatHoldRegistry _instance = null;
+
+    private final Map<String, SeatHold> holds = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer = new HashedWheelTimer("seat-hold-expiry", 100, TimeUnit.MILLISECONDS, 1024);
+
+    protected SeatHoldRegistry() {}
+
+    public static synchronized SeatHoldRegistry instance() {
+        if (_instance == null) {
+            _instance = new SeatHoldRegistry();
+        }
+        return _instance;
+    }
+
+    /**
+     * Holds seats for a user
+     * @param userId The user holding the seats
+     * @param performance The performance the seats are for
+     * @param seatIndexes Sorted seat indexes, as produced by {@link PerformanceSeats#toSeatIndexes}
+     * @return The new hold, or null if any of the seats are already taken
+     */
+    public SeatHold hold(long userId, PerformanceSeats performance, int[] seatIndexes) {
+        if (!performance.claim(seatIndexes))
+            return null;
+
+        long ttlMillis = TimeUnit.SECONDS.toMillis(ServiceConfig.HOLD_TTL_SECONDS);
+        SeatHold hold = new SeatHold(UUID.randomUUID().toString(), userId, performance, seatIndexes,
+                System.currentTimeMillis() + ttlMillis);
+
+        holds.put(hold.getId(), hold);
+        hold.setExpiry(timer.schedule(() -> expire(hold), ttlMillis, TimeUnit.MILLISECONDS));
+        return hold;
+    }
+
+    /**
+     * Gets an active hold
+     * @param id The hold's id
+     * @return The hold, or null if it doesn't exist or has expired
+     */
+    public SeatHold get(String id) {
+        return holds.get(id);
+    }
+
+    /**
+     * Removes a hold without releasing its seats, so they can be booked by the caller. If the booking fails the
+     * caller must release the seats itself.
+     * @param hold The hold to take
+     * @return false if the hold had already expired or been taken
+     */
+    public boolean take(SeatHold hold) {
+        if (!holds.remove(hold.getId(), hold))
+            return false;
+
+        cancelExpiry(hold);
+        return true;
+    }
+
+    /**
+     * Removes a hold and releases its seats
+     * @param hold The hold to release
+     * @return false if the hold had already expired or been taken
+     */
+    public boolean release(SeatHold hold) {
+        if (!take(hold))
+            return false;
+
+        hold.getPerformance().release(hold.getSeatIndexes());
+        return true;
+    }
+
+    /**
+     * Drops every hold without releasing seats. Used when the availability index is rebuilt from the database.
+     */
+    public void clear() {
+        for (SeatHold hold : holds.values()) {
+            if (holds.remove(hold.getId(), hold))
+                cancelExpiry(hold);
+        }
+    }
+
+    private void expire(SeatHold hold) {
+        if (holds.remove(hold.getId(), hold))
+            hold.getPerformance().release(hold.getSeatIndexes());
+    }
+
+    private void cancelExpiry(SeatHold hold) {
+        HashedWheelTimer.Timeout expiry = hold.getExpiry();
+        if (expiry != null)
+            expiry.cancel();
+    }
+}
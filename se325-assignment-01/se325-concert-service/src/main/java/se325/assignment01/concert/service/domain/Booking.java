@@ -25,8 +25,10 @@ import java.util.Set;
 @Table(name = "BOOKINGS")
 public class Booking {
 
+    // A pooled sequence (rather than IDENTITY) lets Hibernate batch the inserts when several bookings are made at once
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
+    @SequenceGenerator(name = "booking_seq", sequenceName = "BOOKING_SEQ", allocationSize = 50)
     private Long id;
 
     @ManyToOne
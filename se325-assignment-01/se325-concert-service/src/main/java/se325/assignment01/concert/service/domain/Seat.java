@@ -15,14 +15,18 @@ import java.util.Objects;
 /**
  * This is a Seat Class which stores all the information related to a Concert's Seat
  * This Class will be persisted into a relational database.
+ * A seat is unique on its label and date. With lazy seat storage only booked seats are persisted, and the
+ * constraint stops a seat from being written twice.
  */
 
 @Entity
-@Table(name = "SEATS")
+@Table(name = "SEATS", uniqueConstraints = @UniqueConstraint(columnNames = {"label", "date"}))
 public class Seat {
 
+	// A pooled sequence (rather than IDENTITY) lets Hibernate batch the inserts when a venue's seats are created
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seat_seq")
+	@SequenceGenerator(name = "seat_seq", sequenceName = "SEAT_SEQ", allocationSize = 50)
 	private Long id;
 
 	private String label;
@@ -33,6 +37,10 @@ public class Seat {
 
 	private BigDecimal price;
 
+	// Bumped each time the seat is updated, so two bookings of the same seat are caught when the second commits
+	@Version
+	private long version;
+
 	// Default Constructor
 	public Seat() {}
 
@@ -51,6 +59,10 @@ public class Seat {
 		this.id = id;
 	}
 
+	public long getVersion() {
+		return version;
+	}
+
 	public String getLabel() {
 		return label;
 	}
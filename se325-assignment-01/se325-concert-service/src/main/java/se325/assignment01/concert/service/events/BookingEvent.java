@@ -0,0 +1,67 @@
+package se325.assignment01.concert.service.events;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Seats of a performance that have been booked, or unbooked by a cancellation, as sent over a {@link BookingEventBus}.
+ * Seats are given as {@link se325.assignment01.concert.service.util.VenueLayout} seat indexes, as every service
+ * instance loads the same venue layouts.
+ */
+public class BookingEvent {
+
+    private final long concertId;
+    private final LocalDateTime date;
+    private final boolean booked;
+    private final int[] seatIndexes;
+
+    public BookingEvent(long concertId, LocalDateTime date, boolean booked, int[] seatIndexes) {
+        this.concertId = concertId;
+        this.date = date;
+        this.booked = booked;
+        this.seatIndexes = seatIndexes;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * @return true if the seats were booked, false if they were unbooked
+     */
+    public boolean isBooked() {
+        return booked;
+    }
+
+    public int[] getSeatIndexes() {
+        return seatIndexes;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(concertId);
+        out.writeUTF(date.toString());
+        out.writeBoolean(booked);
+        out.writeShort(seatIndexes.length);
+        for (int seatIndex : seatIndexes) {
+            out.writeInt(seatIndex);
+        }
+    }
+
+    static BookingEvent readFrom(DataInputStream in) throws IOException {
+        long concertId = in.readLong();
+        LocalDateTime date = LocalDateTime.parse(in.readUTF());
+        boolean booked = in.readBoolean();
+
+        int[] seatIndexes = new int[in.readUnsignedShort()];
+        for (int i = 0; i < seatIndexes.length; i++) {
+            seatIndexes[i] = in.readInt();
+        }
+        return new BookingEvent(concertId, date, booked, seatIndexes);
+    }
+}
@@ -0,0 +1,31 @@
+package se325.assignment01.concert.service.events;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link BookingEvent}s between the service instances sharing a database, so each instance can keep its seat
+ * availability up to date and notify its own subscribers about bookings made on the others. Events are sent in
+ * batches. An instance never receives the events it published itself.
+ * <p>
+ * Which implementation is used is set by {@link se325.assignment01.concert.service.util.ServiceConfig#EVENT_BUS}.
+ */
+public interface BookingEventBus {
+
+    /**
+     * Sends a batch of events to the other service instances
+     * @param events The events, in the order they happened
+     */
+    void publish(List<BookingEvent> events);
+
+    /**
+     * Sets what to do with the batches of events received from other service instances
+     * @param listener Called with each batch, never on a request thread
+     */
+    void subscribe(Consumer<List<BookingEvent>> listener);
+
+    /**
+     * Stops sending and receiving events
+     */
+    void close();
+}
@@ -0,0 +1,142 @@
+package se325.assignment01.concert.service.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.services.NotificationExecutor;
+import se325.assignment01.concert.service.subscription.NotificationDispatcher;
+import se325.assignment01.concert.service.util.CoalescingTask;
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton class that shares this service instance's bookings with the other instances using the same database,
+ * over a {@link BookingEventBus}, and applies theirs. Bookings made here are queued and published in batches at
+ * most once per interval (see {@link ServiceConfig#EVENT_BUS_BATCH_MILLIS}), to keep the traffic between instances
+ * down. Bookings made elsewhere are marked in this instance's {@link SeatAvailabilityIndex}, and the performances
+ * they change are passed to the {@link NotificationDispatcher}, so each instance only notifies its own subscribers.
+ */
+public class BookingEvents {
+
+    private static final Logger _logger = LoggerFactory.getLogger(BookingEvents.class);
+    private static BookingEvents _instance = null;
+
+    private final BookingEventBus bus;
+    private final Queue<BookingEvent> pending = new ConcurrentLinkedQueue<>();
+    private final HashedWheelTimer timer = new HashedWheelTimer("booking-event-batching", 5, TimeUnit.MILLISECONDS, 512);
+    private final CoalescingTask publish;
+
+    private final LongAdder eventsPublished = new LongAdder();
+    private final LongAdder batchesPublished = new LongAdder();
+    private final LongAdder eventsReceived = new LongAdder();
+
+    protected BookingEvents() {
+        bus = createBus();
+        bus.subscribe(this::apply);
+        publish = new CoalescingTask(this::publishPending, timer, NotificationExecutor.instance(),
+                ServiceConfig.EVENT_BUS_BATCH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized BookingEvents instance() {
+        if (_instance == null) {
+            _instance = new BookingEvents();
+        }
+        return _instance;
+    }
+
+    /**
+     * Shares a booking committed by this instance
+     * @param performance The performance booked
+     * @param seatIndexes The booking's seats
+     */
+    public void booked(PerformanceSeats performance, int[] seatIndexes) {
+        pending.offer(new BookingEvent(performance.getConcertId(), performance.getDate(), true, seatIndexes));
+        publish.request();
+    }
+
+    /**
+     * Shares a booking cancelled by this instance
+     * @param performance The performance the booking was for
+     * @param seatIndexes The booking's seats
+     */
+    public void unbooked(PerformanceSeats performance, int[] seatIndexes) {
+        pending.offer(new BookingEvent(performance.getConcertId(), performance.getDate(), false, seatIndexes));
+        publish.request();
+    }
+
+    /**
+     * @return Number of events published to other instances
+     */
+    public long getEventsPublished() {
+        return eventsPublished.sum();
+    }
+
+    /**
+     * @return Number of batches the published events were sent in
+     */
+    public long getBatchesPublished() {
+        return batchesPublished.sum();
+    }
+
+    /**
+     * @return Number of events received from other instances
+     */
+    public long getEventsReceived() {
+        return eventsReceived.sum();
+    }
+
+    private void publishPending() {
+        List<BookingEvent> batch = new ArrayList<>();
+        BookingEvent event;
+        while ((event = pending.poll()) != null) {
+            batch.add(event);
+        }
+        if (batch.isEmpty())
+            return;
+
+        bus.publish(batch);
+        eventsPublished.add(batch.size());
+        batchesPublished.increment();
+    }
+
+    private void apply(List<BookingEvent> events) {
+        eventsReceived.add(events.size());
+
+        Set<LocalDateTime> changed = new LinkedHashSet<>();
+        for (BookingEvent event : events) {
+            PerformanceSeats performance = SeatAvailabilityIndex.instance().get(event.getDate());
+            if (performance == null)
+                continue;
+
+            if (event.isBooked())
+                performance.recordBookedElsewhere(event.getSeatIndexes());
+            else
+                performance.unbook(event.getSeatIndexes());
+            changed.add(event.getDate());
+        }
+
+        changed.forEach(NotificationDispatcher.instance()::changed);
+    }
+
+    private static BookingEventBus createBus() {
+        if ("multicast".equalsIgnoreCase(ServiceConfig.EVENT_BUS)) {
+            try {
+                return new MulticastBookingEventBus(ServiceConfig.EVENT_BUS_GROUP, ServiceConfig.EVENT_BUS_PORT);
+            } catch (RuntimeException e) {
+                _logger.error("Failed to start the multicast booking event bus, bookings won't be shared", e);
+            }
+        }
+        return new InMemoryBookingEventBus();
+    }
+}
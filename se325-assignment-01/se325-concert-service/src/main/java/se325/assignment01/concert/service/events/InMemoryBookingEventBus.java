@@ -0,0 +1,39 @@
+package se325.assignment01.concert.service.events;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * A {@link BookingEventBus} between buses in the same JVM. A single service instance has no other buses to send to,
+ * so publishing costs nothing. Several buses can be created to stand in for several instances, e.g. in tests.
+ */
+public class InMemoryBookingEventBus implements BookingEventBus {
+
+    private static final Set<InMemoryBookingEventBus> buses = new CopyOnWriteArraySet<>();
+
+    private volatile Consumer<List<BookingEvent>> listener = events -> {};
+
+    public InMemoryBookingEventBus() {
+        buses.add(this);
+    }
+
+    @Override
+    public void publish(List<BookingEvent> events) {
+        for (InMemoryBookingEventBus bus : buses) {
+            if (bus != this)
+                bus.listener.accept(events);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<List<BookingEvent>> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        buses.remove(this);
+    }
+}
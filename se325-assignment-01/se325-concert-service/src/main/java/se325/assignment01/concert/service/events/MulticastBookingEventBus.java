@@ -0,0 +1,170 @@
+package se325.assignment01.concert.service.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A {@link BookingEventBus} that sends events as UDP multicast datagrams, standing in for a message broker so several
+ * service instances (e.g. on one machine in a test) can share events without one. Delivery is best effort, as with
+ * any UDP: a lost datagram only means some subscribers hear about a booking late, on the next event for the
+ * performance or not at all.
+ * <p>
+ * Each datagram holds as many events of a batch as fit in a typical network packet:
+ * <pre>
+ * int      magic number
+ * UTF      id of the sending bus, so a bus can ignore its own datagrams
+ * short    number of events, then each event (see {@link BookingEvent})
+ * </pre>
+ */
+public class MulticastBookingEventBus implements BookingEventBus {
+
+    private static final Logger _logger = LoggerFactory.getLogger(MulticastBookingEventBus.class);
+
+    private static final int MAGIC = 0x42455654;
+    private static final int MAX_DATAGRAM_BYTES = 1400;
+    private static final int MAX_RECEIVE_BYTES = 65535;
+
+    private final String busId = UUID.randomUUID().toString();
+    private final InetAddress group;
+    private final int port;
+    private final MulticastSocket socket;
+
+    private volatile Consumer<List<BookingEvent>> listener = events -> {};
+    private volatile boolean closed = false;
+
+    /**
+     * Joins the multicast group and starts receiving events
+     * @param groupAddress Multicast group shared by the service instances, e.g. 239.255.42.99
+     * @param port Port shared by the service instances
+     * @throws UncheckedIOException if the group can't be joined
+     */
+    public MulticastBookingEventBus(String groupAddress, int port) {
+        this.port = port;
+        try {
+            group = InetAddress.getByName(groupAddress);
+            socket = new MulticastSocket(port);
+            // Keep datagrams on the local network, and deliver them to other instances on the same machine
+            socket.setTimeToLive(1);
+            socket.setLoopbackMode(false);
+            socket.joinGroup(group);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to join booking event group " + groupAddress + ":" + port, e);
+        }
+
+        Thread receiver = new Thread(this::receive, "booking-event-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    @Override
+    public void publish(List<BookingEvent> events) {
+        try {
+            List<byte[]> pending = new ArrayList<>();
+            int pendingBytes = 0;
+            for (BookingEvent event : events) {
+                byte[] bytes = toBytes(event);
+                if (!pending.isEmpty() && pendingBytes + bytes.length > MAX_DATAGRAM_BYTES) {
+                    send(pending);
+                    pending.clear();
+                    pendingBytes = 0;
+                }
+                pending.add(bytes);
+                pendingBytes += bytes.length;
+            }
+            if (!pending.isEmpty())
+                send(pending);
+        } catch (IOException e) {
+            _logger.warn("Failed to publish " + events.size() + " booking events", e);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<List<BookingEvent>> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+    }
+
+    private void send(List<byte[]> events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_DATAGRAM_BYTES + 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeUTF(busId);
+            out.writeShort(events.size());
+            for (byte[] event : events) {
+                out.write(event);
+            }
+        }
+        byte[] datagram = bytes.toByteArray();
+        socket.send(new DatagramPacket(datagram, datagram.length, group, port));
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[MAX_RECEIVE_BYTES];
+        while (!closed) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!closed)
+                    _logger.warn("Failed to receive booking events", e);
+                continue;
+            }
+
+            List<BookingEvent> events = fromDatagram(packet);
+            if (events == null)
+                continue;
+
+            try {
+                listener.accept(events);
+            } catch (RuntimeException e) {
+                _logger.error("Failed to handle " + events.size() + " booking events", e);
+            }
+        }
+    }
+
+    // Null if the datagram is our own, or isn't a batch of events
+    private List<BookingEvent> fromDatagram(DatagramPacket packet) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(packet.getData(), packet.getOffset(), packet.getLength()))) {
+            if (in.readInt() != MAGIC || in.readUTF().equals(busId))
+                return null;
+
+            int numEvents = in.readUnsignedShort();
+            List<BookingEvent> events = new ArrayList<>(numEvents);
+            for (int i = 0; i < numEvents; i++) {
+                events.add(BookingEvent.readFrom(in));
+            }
+            return events;
+        } catch (IOException | RuntimeException e) {
+            _logger.warn("Ignoring a malformed booking event datagram", e);
+            return null;
+        }
+    }
+
+    private static byte[] toBytes(BookingEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + event.getSeatIndexes().length * 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            event.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+}
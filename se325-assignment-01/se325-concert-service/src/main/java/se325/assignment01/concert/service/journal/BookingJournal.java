@@ -0,0 +1,505 @@
+package se325.assignment01.concert.service.journal;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.services.BookingWriter;
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.ServiceConfig;
+import se325.assignment01.concert.service.util.VenueLayout;
+import se325.assignment01.concert.service.util.VenueLayouts;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Singleton class for an append-only journal of accepted bookings, kept in a memory-mapped file. Used when
+ * bookings are journalled (see {@link ServiceConfig#BOOKING_DURABILITY}): a booking is acknowledged as soon as it
+ * is in the journal, and a background thread writes the journalled bookings to the database in batches.
+ * <p>
+ * The file starts with a header holding the position up to which entries have been written to the database.
+ * Each entry is its length, a CRC32 checksum of the booking and then the booking, and a zero length marks the
+ * end. An entry's length is written last and its checksum is checked when reading, so an entry torn by a crash
+ * is never mistaken for a booking. When the file fills up, entries start from the beginning again once all the
+ * ones before have been written to the database.
+ * <p>
+ * Entries reach the file when the service is killed, but only survive losing power once the file is forced to
+ * disk. With {@link ServiceConfig#JOURNAL_FSYNC} set to "always", appending waits for that. Concurrent appends
+ * share a single force.
+ * <p>
+ * A batch the database keeps rejecting is tried again a few times, then its bookings one at a time. Any the
+ * database still won't take are moved to a dead-letter file next to the journal, in the same entry format, so the
+ * journal can move on. Their seats stay booked, as the bookings were acknowledged.
+ */
+public class BookingJournal {
+
+    private static final Logger _logger = LoggerFactory.getLogger(BookingJournal.class);
+
+    private static final int MAGIC = 0x424A524E;
+    private static final int APPLIED_POSITION_OFFSET = Integer.BYTES;
+    private static final int HEADER_SIZE = 64;
+
+    // Length and checksum
+    private static final int ENTRY_HEADER_SIZE = 2 * Integer.BYTES;
+
+    // Reads give up waiting for the database after this long, so an outage doesn't hang them
+    private static final long WRITTEN_WAIT_MILLIS = 10000;
+
+    private static BookingJournal _instance = null;
+
+    private final MappedByteBuffer buffer;
+    private final Path deadLetterFile;
+    private final boolean forceOnAppend;
+    private final int writeAttempts;
+    private final long retryMillis;
+    private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+
+    // Held while a batch is being written to the database, so discarding the journal waits for it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object forceLock = new Object();
+
+    // Guarded by this. Sequence numbers count entries appended since the service started.
+    private int writePosition;
+    private long lastSeq;
+    private long writtenSeq;
+    private long epoch;
+    private List<JournalEntry> unreplayed;
+    private int unreplayedEnd;
+
+    private volatile long forcedSeq;
+
+    /**
+     * Opens the journal, creating it if it doesn't exist, and starts the thread that writes it to the database.
+     * Entries that haven't been written yet are kept for {@link #replay()}.
+     * @param file The journal file
+     * @param size Size of the file, in bytes. An existing file is never made smaller
+     * @param forceOnAppend Whether appending waits for the file to be forced to disk
+     * @param writeAttempts How many times a batch is tried before its bookings are tried one at a time
+     * @param retryMillis How long to wait before trying a failed batch again
+     */
+    protected BookingJournal(Path file, int size, boolean forceOnAppend, int writeAttempts, long retryMillis)
+            throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+        this.deadLetterFile = file.resolveSibling(file.getFileName() + ".dead");
+        this.forceOnAppend = forceOnAppend;
+        this.writeAttempts = writeAttempts;
+        this.retryMillis = retryMillis;
+
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.putInt(APPLIED_POSITION_OFFSET, HEADER_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.force();
+        }
+
+        unreplayed = new ArrayList<>();
+        writePosition = read(buffer, buffer.getInt(APPLIED_POSITION_OFFSET), unreplayed);
+        unreplayedEnd = writePosition;
+
+        Thread writer = new Thread(this::writeBehind, "booking-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static synchronized BookingJournal instance() {
+        if (_instance == null) {
+            Path file = Paths.get(ServiceConfig.JOURNAL_FILE).toAbsolutePath();
+            try {
+                Files.createDirectories(file.getParent());
+                _instance = new BookingJournal(file, ServiceConfig.JOURNAL_SIZE_BYTES, "always".equals(ServiceConfig.JOURNAL_FSYNC),
+                        ServiceConfig.JOURNAL_WRITE_ATTEMPTS, ServiceConfig.JOURNAL_RETRY_MILLIS);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Couldn't open the booking journal " + file, e);
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Journals a booking of seats that have already been claimed
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @return The booking, with its ID. It is written to the database later
+     */
+    public Booking append(User user, BookingRequestDTO bookingDTO) {
+        List<BookingRequestDTO> bookingDTOs = new ArrayList<>();
+        bookingDTOs.add(bookingDTO);
+        return appendAll(user, bookingDTOs).get(0);
+    }
+
+    /**
+     * Journals several bookings of seats that have already been claimed, forcing the file to disk (if needed) once
+     * for all of them
+     * @param user The user making the bookings
+     * @param bookingDTOs The booking requests
+     * @return The bookings, with their IDs, in the same order as the requests
+     */
+    public List<Booking> appendAll(User user, List<BookingRequestDTO> bookingDTOs) {
+        List<JournalEntry> entries = new ArrayList<>();
+        for (BookingRequestDTO bookingDTO : bookingDTOs) {
+            entries.add(new JournalEntry(nextBookingId(), user.getId(), bookingDTO.getConcertId(), bookingDTO.getDate(),
+                    bookingDTO.getSeatLabels()));
+        }
+
+        long seq = write(entries);
+        if (forceOnAppend)
+            force(seq);
+
+        List<Booking> bookings = new ArrayList<>();
+        for (JournalEntry entry : entries) {
+            bookings.add(toBooking(entry, user));
+        }
+        return bookings;
+    }
+
+    /**
+     * Writes the entries left over from before the service last stopped to the database. Called when the service
+     * starts, before any bookings are made.
+     */
+    public void replay() {
+        List<JournalEntry> entries;
+        int end;
+        synchronized (this) {
+            entries = unreplayed;
+            end = unreplayedEnd;
+            unreplayed = new ArrayList<>();
+        }
+
+        if (entries.isEmpty())
+            return;
+
+        _logger.info("Replaying " + entries.size() + " journalled bookings");
+        for (int i = 0; i < entries.size(); i += ServiceConfig.JOURNAL_WRITE_BATCH_SIZE) {
+            BookingWriter.writeJournalled(entries.subList(i, Math.min(entries.size(), i + ServiceConfig.JOURNAL_WRITE_BATCH_SIZE)));
+        }
+
+        synchronized (this) {
+            if (buffer.getInt(APPLIED_POSITION_OFFSET) < end)
+                buffer.putInt(APPLIED_POSITION_OFFSET, end);
+        }
+
+        // The replayed bookings kept their IDs. If the database has been recreated its sequence has started again,
+        // so skip past them rather than handing them out twice.
+        long maxId = entries.stream().mapToLong(JournalEntry::getBookingId).max().getAsLong();
+        long id;
+        do {
+            id = nextBookingId();
+        } while (id <= maxId);
+    }
+
+    /**
+     * Waits until every booking journalled so far has been written to the database, so it can be read back
+     */
+    public synchronized void awaitWritten() {
+        long target = lastSeq;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITTEN_WAIT_MILLIS);
+
+        try {
+            while (writtenSeq < target) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    _logger.warn("Gave up waiting for journalled bookings to be written to the database");
+                    return;
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the bookings that were moved to the dead-letter file because the database wouldn't take them, so they
+     * can be looked at and written by hand
+     * @return The dead-lettered bookings, oldest first
+     */
+    public List<JournalEntry> readDeadLetters() throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        if (Files.exists(deadLetterFile))
+            read(ByteBuffer.wrap(Files.readAllBytes(deadLetterFile)), 0, entries);
+        return entries;
+    }
+
+    /**
+     * Throws away every entry, including those not yet written to the database. FOR TESTING ONLY! Used when the
+     * database is wiped.
+     */
+    public void discard() {
+        writeLock.lock();
+        try {
+            synchronized (this) {
+                pending.clear();
+                unreplayed = new ArrayList<>();
+                epoch++;
+
+                buffer.putInt(HEADER_SIZE, 0);
+                buffer.putInt(APPLIED_POSITION_OFFSET, HEADER_SIZE);
+                writePosition = HEADER_SIZE;
+                writtenSeq = lastSeq;
+                notifyAll();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Appends entries to the file and queues them to be written to the database, returning the last one's sequence number
+    private synchronized long write(List<JournalEntry> entries) {
+        for (JournalEntry entry : entries) {
+            byte[] payload = entry.toBytes();
+            int size = ENTRY_HEADER_SIZE + payload.length;
+            if (HEADER_SIZE + size + Integer.BYTES > buffer.capacity())
+                throw new IllegalArgumentException("Booking is too large for the journal: " + size + " bytes");
+
+            if (writePosition + size + Integer.BYTES > buffer.capacity())
+                wrap();
+
+            ByteBuffer out = buffer.duplicate();
+            out.position(writePosition + Integer.BYTES);
+            out.putInt(checksum(payload));
+            out.put(payload);
+            out.putInt(0);
+
+            // The length goes in last, so the entry can't be read before it is complete
+            buffer.putInt(writePosition, payload.length);
+            writePosition += size;
+
+            pending.add(new Pending(entry, writePosition, ++lastSeq, epoch));
+        }
+        return lastSeq;
+    }
+
+    // Starts again from the beginning of the file, once every entry has been written to the database
+    private void wrap() {
+        try {
+            while (writtenSeq < lastSeq) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for room in the booking journal", e);
+        }
+
+        buffer.putInt(HEADER_SIZE, 0);
+        buffer.putInt(APPLIED_POSITION_OFFSET, HEADER_SIZE);
+        writePosition = HEADER_SIZE;
+    }
+
+    // Forces the file to disk if it hasn't been since the given entry was appended
+    private void force(long seq) {
+        if (forcedSeq >= seq)
+            return;
+
+        synchronized (forceLock) {
+            if (forcedSeq >= seq)
+                return;
+
+            long target;
+            synchronized (this) {
+                target = lastSeq;
+            }
+            buffer.force();
+            forcedSeq = target;
+        }
+    }
+
+    // Reads the complete entries from a position, returning where they end
+    private static int read(ByteBuffer buffer, int position, List<JournalEntry> entries) {
+        while (position + ENTRY_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + ENTRY_HEADER_SIZE + length > buffer.capacity())
+                break;
+
+            byte[] payload = new byte[length];
+            ByteBuffer in = buffer.duplicate();
+            in.position(position + ENTRY_HEADER_SIZE);
+            in.get(payload);
+
+            if (checksum(payload) != buffer.getInt(position + Integer.BYTES)) {
+                _logger.warn("Ignoring a torn booking journal entry at " + position);
+                break;
+            }
+
+            entries.add(JournalEntry.fromBytes(payload));
+            position += ENTRY_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void writeBehind() {
+        List<Pending> batch = new ArrayList<>();
+
+        try {
+            while (true) {
+                batch.add(pending.take());
+                pending.drainTo(batch, ServiceConfig.JOURNAL_WRITE_BATCH_SIZE - 1);
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeToDatabase(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= writeAttempts) {
+                    _logger.error("Failed to write " + batch.size() + " journalled bookings to the database after "
+                            + attempt + " attempts, trying them one at a time", e);
+                    break;
+                }
+                _logger.error("Failed to write " + batch.size() + " journalled bookings to the database, will retry", e);
+            }
+
+            Thread.sleep(retryMillis);
+        }
+
+        // So one booking the database won't take doesn't hold up the rest
+        for (Pending p : batch) {
+            List<Pending> single = new ArrayList<>();
+            single.add(p);
+            try {
+                writeToDatabase(single);
+            } catch (RuntimeException e) {
+                deadLetter(p, e);
+            }
+        }
+    }
+
+    // Writes bookings to the database, skipping any thrown away since they were journalled
+    private void writeToDatabase(List<Pending> batch) {
+        writeLock.lock();
+        try {
+            synchronized (this) {
+                long current = epoch;
+                batch.removeIf(p -> p.epoch != current);
+            }
+            if (batch.isEmpty())
+                return;
+
+            BookingWriter.writeJournalled(batch.stream().map(p -> p.entry).collect(Collectors.toList()));
+            markWritten(batch.get(batch.size() - 1));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Moves a booking the database won't take to the dead-letter file, so the entries after it can be written
+    private void deadLetter(Pending p, RuntimeException cause) {
+        writeLock.lock();
+        try {
+            synchronized (this) {
+                if (p.epoch != epoch)
+                    return;
+            }
+
+            JournalEntry entry = p.entry;
+            _logger.error("Moving journalled booking " + entry.getBookingId() + " to " + deadLetterFile
+                    + " as the database won't take it", cause);
+
+            byte[] payload = entry.toBytes();
+            ByteBuffer out = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length);
+            out.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+            try (FileChannel channel = FileChannel.open(deadLetterFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(out);
+                channel.force(false);
+            } catch (IOException e) {
+                _logger.error("Couldn't write to " + deadLetterFile + ", dropping journalled booking "
+                        + entry.getBookingId() + " of seats " + entry.getSeatLabels() + " on " + entry.getDate()
+                        + " for user " + entry.getUserId(), e);
+            }
+
+            markWritten(p);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private synchronized void markWritten(Pending last) {
+        buffer.putInt(APPLIED_POSITION_OFFSET, last.endPosition);
+        writtenSeq = last.seq;
+        notifyAll();
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // Takes the next booking ID from Hibernate's generator. It is usually already allocated, so the database isn't needed
+    private static long nextBookingId() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            SessionImplementor session = em.unwrap(SessionImplementor.class);
+            IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(Booking.class)
+                    .getIdentifierGenerator();
+            return (Long) generator.generate(session, null);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static Booking toBooking(JournalEntry entry, User user) {
+        VenueLayout layout = VenueLayouts.instance().forConcert(entry.getConcertId());
+        Set<Seat> seats = new HashSet<>();
+        for (String label : entry.getSeatLabels()) {
+            seats.add(layout.createSeat(entry.getDate(), layout.seatIndexOf(label), true));
+        }
+
+        Booking booking = new Booking(entry.getConcertId(), entry.getDate(), seats);
+        booking.setId(entry.getBookingId());
+        booking.setUser(user);
+        return booking;
+    }
+
+    /**
+     * A journalled booking waiting to be written to the database
+     */
+    private static class Pending {
+
+        private final JournalEntry entry;
+        private final int endPosition;
+        private final long seq;
+        private final long epoch;
+
+        private Pending(JournalEntry entry, int endPosition, long seq, long epoch) {
+            this.entry = entry;
+            this.endPosition = endPosition;
+            this.seq = seq;
+            this.epoch = epoch;
+        }
+    }
+}
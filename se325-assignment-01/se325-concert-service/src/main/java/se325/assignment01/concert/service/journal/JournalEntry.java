@@ -0,0 +1,87 @@
+package se325.assignment01.concert.service.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A booking as recorded in the {@link BookingJournal}: everything needed to write it to the database later.
+ */
+public class JournalEntry {
+
+    private final long bookingId;
+    private final long userId;
+    private final long concertId;
+    private final LocalDateTime date;
+    private final List<String> seatLabels;
+
+    public JournalEntry(long bookingId, long userId, long concertId, LocalDateTime date, List<String> seatLabels) {
+        this.bookingId = bookingId;
+        this.userId = userId;
+        this.concertId = concertId;
+        this.date = date;
+        this.seatLabels = Collections.unmodifiableList(new ArrayList<>(seatLabels));
+    }
+
+    public long getBookingId() {
+        return bookingId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public List<String> getSeatLabels() {
+        return seatLabels;
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + seatLabels.size() * 8);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(bookingId);
+            out.writeLong(userId);
+            out.writeLong(concertId);
+            out.writeUTF(date.toString());
+            out.writeInt(seatLabels.size());
+            for (String label : seatLabels) {
+                out.writeUTF(label);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalEntry fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            long bookingId = in.readLong();
+            long userId = in.readLong();
+            long concertId = in.readLong();
+            LocalDateTime date = LocalDateTime.parse(in.readUTF());
+
+            int numSeats = in.readInt();
+            List<String> seatLabels = new ArrayList<>(numSeats);
+            for (int i = 0; i < numSeats; i++) {
+                seatLabels.add(in.readUTF());
+            }
+            return new JournalEntry(bookingId, userId, concertId, date, seatLabels);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
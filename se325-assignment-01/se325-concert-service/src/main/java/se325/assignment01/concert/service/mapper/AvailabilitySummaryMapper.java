@@ -0,0 +1,30 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.AvailabilitySummaryDTO;
+import se325.assignment01.concert.common.dto.PriceBandAvailabilityDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.util.VenueLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the booked seat counters of a PerformanceSeats to AvailabilitySummaryDTO class
+ */
+public class AvailabilitySummaryMapper {
+
+    // Maps the performance's counters to DTO class
+    public static AvailabilitySummaryDTO performanceToDTO(PerformanceSeats performance) {
+        VenueLayout layout = performance.getLayout();
+        VenueLayout.PriceBand[] bands = layout.getPriceBands();
+
+        List<PriceBandAvailabilityDTO> priceBands = new ArrayList<>();
+        for (int b = 0; b < bands.length; b++) {
+            priceBands.add(new PriceBandAvailabilityDTO(bands[b].name, bands[b].price, layout.getNumSeats(b),
+                    performance.getNumBooked(b)));
+        }
+
+        return new AvailabilitySummaryDTO(performance.getConcertId(), performance.getDate(), layout.getNumSeats(),
+                performance.getNumBooked(), performance.getPercentageBooked(), priceBands);
+    }
+}
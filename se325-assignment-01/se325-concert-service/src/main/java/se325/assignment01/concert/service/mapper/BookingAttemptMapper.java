@@ -0,0 +1,36 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.BookingAttemptDTO;
+import se325.assignment01.concert.common.types.BookingOutcome;
+import se325.assignment01.concert.service.services.BookingAttempt;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
+
+/**
+ * Maps BookingAttempt class to BookingAttemptDTO class
+ */
+public class BookingAttemptMapper {
+
+    // Maps domain class to DTO class. The outcome comes from the status the booking request would have had, and
+    // the booking's location is resolved against the service's base URI like the Location header would have been
+    public static BookingAttemptDTO domainToDTO(BookingAttempt attempt, URI baseUri) {
+        Response response = attempt.getResponse();
+        if (response == null)
+            return new BookingAttemptDTO(attempt.getId(), null, null);
+
+        int status = response.getStatus();
+        if (status == Response.Status.CREATED.getStatusCode())
+            return new BookingAttemptDTO(attempt.getId(), BookingOutcome.Booked, resolve(baseUri, response.getLocation()).toString());
+        if (status == Response.Status.BAD_REQUEST.getStatusCode())
+            return new BookingAttemptDTO(attempt.getId(), BookingOutcome.InvalidConcert, null);
+        if (status == Response.Status.FORBIDDEN.getStatusCode())
+            return new BookingAttemptDTO(attempt.getId(), BookingOutcome.SeatsUnavailable, null);
+        return new BookingAttemptDTO(attempt.getId(), BookingOutcome.Failed, null);
+    }
+
+    private static URI resolve(URI baseUri, URI location) {
+        return location.isAbsolute() ? location : UriBuilder.fromUri(baseUri).path(location.getPath()).build();
+    }
+}
@@ -0,0 +1,59 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.util.VenueLayout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Maps the seats of a PerformanceSeats to a compact binary form, for clients which already know the venue's
+ * layout and only need to know which seats are booked. It is written with a DataOutputStream (big-endian):
+ * <pre>
+ * byte     format version (1)
+ * long     version of the seat availability (as in the ETag)
+ * int      number of seats
+ * byte     number of price bands, then for each band:
+ *   UTF      name
+ *   UTF      price, e.g. "150"
+ *   int      number of seats in the band
+ * byte[]   one bit per seat in venue order, bit i % 8 of byte i / 8 set if seat i is booked
+ * </pre>
+ * The 120 seat theatre's seats take 15 bytes, compared with a few KB as a list of SeatDTOs.
+ */
+public class SeatAvailabilityMapper {
+
+    public static final String MEDIA_TYPE = "application/vnd.concert.seat-bitmap";
+
+    private static final int FORMAT_VERSION = 1;
+
+    // Maps the performance's seats to their binary form. The version must be read before the seats are mapped,
+    // so the seats are never older than it
+    public static byte[] performanceToBytes(PerformanceSeats performance, long version) {
+        VenueLayout layout = performance.getLayout();
+        VenueLayout.PriceBand[] bands = layout.getPriceBands();
+
+        byte[] bitmap = performance.toBitmap();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmap.length + 32 * bands.length + 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(version);
+            out.writeInt(layout.getNumSeats());
+
+            out.writeByte(bands.length);
+            for (int b = 0; b < bands.length; b++) {
+                out.writeUTF(bands[b].name);
+                out.writeUTF(bands[b].price.toPlainString());
+                out.writeInt(layout.getNumSeats(b));
+            }
+
+            out.write(bitmap);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
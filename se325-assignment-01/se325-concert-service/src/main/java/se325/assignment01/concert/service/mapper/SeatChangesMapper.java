@@ -0,0 +1,43 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.SeatAvailabilityDeltaDTO;
+import se325.assignment01.concert.common.dto.SeatDTO;
+import se325.assignment01.concert.common.types.BookingStatus;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatChangeLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the changed seats of a PerformanceSeats to SeatAvailabilityDeltaDTO class
+ */
+public class SeatChangesMapper {
+
+    // Maps the seats which have changed since a version to DTO class. Each seat is reported as it is now, which may
+    // be ahead of the version returned but never behind it
+    public static SeatAvailabilityDeltaDTO changesToDTO(PerformanceSeats performance, long sinceVersion,
+                                                        SeatChangeLog.Changes changes) {
+        return toDTO(performance, sinceVersion, changes.getVersion(), changes.getSeatIndexes());
+    }
+
+    // Maps every seat of the performance to DTO class, for a client that has no version to start from. The version
+    // must be read before the seats are mapped, so the seats are never older than it
+    public static SeatAvailabilityDeltaDTO performanceToDTO(PerformanceSeats performance, long version) {
+        return toDTO(performance, 0, version, performance.seatIndexes(BookingStatus.Any));
+    }
+
+    private static SeatAvailabilityDeltaDTO toDTO(PerformanceSeats performance, long sinceVersion, long version,
+                                                  int[] seatIndexes) {
+        List<SeatDTO> bookedSeats = new ArrayList<>();
+        List<SeatDTO> unbookedSeats = new ArrayList<>();
+        for (int seatIndex : seatIndexes) {
+            SeatDTO seat = SeatMapper.layoutToDTO(performance.getLayout(), seatIndex);
+            if (performance.isBooked(seatIndex))
+                bookedSeats.add(seat);
+            else
+                unbookedSeats.add(seat);
+        }
+        return new SeatAvailabilityDeltaDTO(sinceVersion, version, bookedSeats, unbookedSeats);
+    }
+}
@@ -0,0 +1,26 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.SeatHoldDTO;
+import se325.assignment01.concert.service.availability.SeatHold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps SeatHold class to SeatHoldDTO class
+ */
+public class SeatHoldMapper {
+
+    // Maps domain class to DTO class
+    public static SeatHoldDTO domainToDTO(SeatHold hold) {
+        List<String> seatLabels = new ArrayList<>();
+        for (int seatIndex : hold.getSeatIndexes()) {
+            seatLabels.add(hold.getPerformance().getLayout().labelAt(seatIndex));
+        }
+
+        long ttlMillis = Math.max(0, hold.getExpiresAtMillis() - System.currentTimeMillis());
+        return new SeatHoldDTO(hold.getId(), hold.getPerformance().getConcertId(), hold.getPerformance().getDate(),
+                seatLabels, TimeUnit.MILLISECONDS.toSeconds(ttlMillis));
+    }
+}
@@ -2,6 +2,7 @@ package se325.assignment01.concert.service.mapper;
 
 import se325.assignment01.concert.common.dto.SeatDTO;
 import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.util.VenueLayout;
 
 import java.time.LocalDateTime;
 
@@ -13,4 +14,9 @@ public class SeatMapper {
     public static SeatDTO domainToDTO(Seat seat) {
         return new SeatDTO(seat.getLabel(), seat.getPrice());
     }
+
+    // Maps a seat index from a venue layout to DTO class
+    public static SeatDTO layoutToDTO(VenueLayout layout, int seatIndex) {
+        return new SeatDTO(layout.labelAt(seatIndex), layout.priceAt(seatIndex));
+    }
 }
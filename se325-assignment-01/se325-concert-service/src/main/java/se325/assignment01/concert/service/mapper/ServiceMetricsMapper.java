@@ -0,0 +1,46 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.ServiceMetricsDTO;
+import se325.assignment01.concert.service.events.BookingEvents;
+import se325.assignment01.concert.service.services.AuthenticationTokens;
+import se325.assignment01.concert.service.services.BookingAttempts;
+import se325.assignment01.concert.service.services.NotificationExecutor;
+import se325.assignment01.concert.service.subscription.NotificationDispatcher;
+import se325.assignment01.concert.service.subscription.SubscriptionRegistry;
+
+/**
+ * Maps the counters of the service's background workers to ServiceMetricsDTO class
+ */
+public class ServiceMetricsMapper {
+
+    // Maps the counters of the notification executor, dispatcher and subscriptions, the booking event bus, the
+    // authentication token cache and the booking workers to DTO class
+    public static ServiceMetricsDTO toDTO(NotificationExecutor notifications, NotificationDispatcher dispatcher,
+                                          SubscriptionRegistry subscriptions, BookingEvents bookingEvents,
+                                          AuthenticationTokens tokens, BookingAttempts bookingAttempts) {
+        ServiceMetricsDTO dto = new ServiceMetricsDTO();
+
+        dto.setNotificationQueueDepth(notifications.getQueueDepth());
+        dto.setNotificationActiveThreads(notifications.getActiveCount());
+        dto.setNotificationsCompleted(notifications.getCompletedCount());
+        dto.setNotificationsRunOnCaller(notifications.getRanOnCaller());
+
+        dto.setNotificationTriggers(dispatcher.getTriggers());
+        dto.setNotificationEvaluations(dispatcher.getEvaluations());
+        dto.setSubscribersNotified(dispatcher.getNotified());
+        dto.setLiveSubscribers(subscriptions.getNumSubscribers());
+
+        dto.setBookingEventsPublished(bookingEvents.getEventsPublished());
+        dto.setBookingEventBatchesPublished(bookingEvents.getBatchesPublished());
+        dto.setBookingEventsReceived(bookingEvents.getEventsReceived());
+
+        dto.setAuthTokenCacheHits(tokens.getHits());
+        dto.setAuthTokenCacheMisses(tokens.getMisses());
+        dto.setAuthTokenCacheEvictions(tokens.getEvictions());
+
+        dto.setAsyncBookingQueueDepth(bookingAttempts.getQueueDepth());
+        dto.setAsyncBookingsRejected(bookingAttempts.getRejected());
+
+        return dto;
+    }
+}
@@ -0,0 +1,16 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.WaitingRoomTicketDTO;
+import se325.assignment01.concert.service.admission.WaitingRoom;
+
+/**
+ * Maps a WaitingRoom token to WaitingRoomTicketDTO class
+ */
+public class WaitingRoomTicketMapper {
+
+    // Maps the token's place in the waiting room to DTO class
+    public static WaitingRoomTicketDTO domainToDTO(WaitingRoom room, String token, long position) {
+        return new WaitingRoomTicketDTO(token, room.getConcertId(), room.getDate(), position, position == 0,
+                room.estimateWaitSeconds(position));
+    }
+}
@@ -0,0 +1,80 @@
+package se325.assignment01.concert.service.services;
+
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.util.BoundedTtlCache;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that remembers which user each authentication token belongs to, so authenticated requests don't
+ * need to look the token up in the database. Tokens are added when a user logs in and dropped when the user logs in
+ * again (which reissues their token), and are kept in a {@link BoundedTtlCache} so they are forgotten after a while.
+ * <p>
+ * A token reissued by another service instance is only noticed here once it expires from the cache, so the time to
+ * live (see {@link ServiceConfig#AUTH_TOKEN_TTL_SECONDS}) bounds how long an old token keeps working. It defaults to a
+ * few seconds: long enough for a client's burst of requests to share one lookup.
+ */
+public class AuthenticationTokens {
+
+    private static AuthenticationTokens _instance = null;
+
+    private final BoundedTtlCache<String, User> users = new BoundedTtlCache<>(
+            ServiceConfig.AUTH_TOKEN_CACHE_SIZE, ServiceConfig.AUTH_TOKEN_TTL_SECONDS, TimeUnit.SECONDS);
+
+    protected AuthenticationTokens() {}
+
+    public static synchronized AuthenticationTokens instance() {
+        if (_instance == null) {
+            _instance = new AuthenticationTokens();
+        }
+        return _instance;
+    }
+
+    /**
+     * @param token An authentication token sent by a client
+     * @return The (detached) user the token belongs to, or null if it isn't remembered
+     */
+    public User get(String token) {
+        return users.get(token);
+    }
+
+    /**
+     * Remembers a user's token
+     * @param token The token
+     * @param user The user, detached from its entity manager, as it is shared between requests
+     */
+    public void put(String token, User user) {
+        users.put(token, user);
+    }
+
+    /**
+     * Forgets a token, e.g. when it has been reissued
+     */
+    public void invalidate(String token) {
+        users.invalidate(token);
+    }
+
+    public void clear() {
+        users.clear();
+    }
+
+    /**
+     * @return Number of tokens remembered, which may include some that have expired but not yet been dropped
+     */
+    public int size() {
+        return users.size();
+    }
+
+    public long getHits() {
+        return users.getHits();
+    }
+
+    public long getMisses() {
+        return users.getMisses();
+    }
+
+    public long getEvictions() {
+        return users.getEvictions();
+    }
+}
@@ -0,0 +1,50 @@
+package se325.assignment01.concert.service.services;
+
+import javax.ws.rs.core.Response;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A booking submitted to be made in the background (see {@link BookingAttempts}), and the response it gets once
+ * it has been made or refused.
+ */
+public class BookingAttempt {
+
+    private final String id = UUID.randomUUID().toString();
+    private final long userId;
+    private final CompletableFuture<Response> result = new CompletableFuture<>();
+
+    public BookingAttempt(long userId) {
+        this.userId = userId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * @return The response to the booking request, or null if the booking hasn't been processed yet
+     */
+    public Response getResponse() {
+        return result.getNow(null);
+    }
+
+    /**
+     * Runs an action once the booking has been processed, straight away if it already has
+     */
+    public void whenDone(Runnable action) {
+        result.thenRun(action);
+    }
+
+    void complete(Response response) {
+        result.complete(response);
+    }
+}
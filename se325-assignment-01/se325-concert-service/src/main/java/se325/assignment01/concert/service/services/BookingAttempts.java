@@ -0,0 +1,107 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.util.BoundedTtlCache;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Singleton class that makes bookings in the background, for clients that ask for the booking to be made
+ * asynchronously. Bookings wait in a bounded queue for one of a fixed number of worker threads, so request
+ * threads are never tied up waiting on the database. When the queue is full new bookings are turned away,
+ * and how many have been turned away is counted.
+ * <p>
+ * Attempts are remembered for a while after they are made so their outcome can be looked up.
+ */
+public class BookingAttempts {
+
+    private static final Logger _logger = LoggerFactory.getLogger(BookingAttempts.class);
+    private static BookingAttempts _instance = null;
+
+    private final ThreadPoolExecutor workers;
+    private final BoundedTtlCache<String, BookingAttempt> attempts = new BoundedTtlCache<>(
+            ServiceConfig.BOOKING_ATTEMPTS_CACHE_SIZE, ServiceConfig.BOOKING_ATTEMPT_TTL_SECONDS, TimeUnit.SECONDS);
+    private final LongAdder rejected = new LongAdder();
+
+    protected BookingAttempts() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "booking-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        workers = new ThreadPoolExecutor(ServiceConfig.ASYNC_BOOKING_WORKERS, ServiceConfig.ASYNC_BOOKING_WORKERS,
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(ServiceConfig.ASYNC_BOOKING_QUEUE_CAPACITY),
+                threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static synchronized BookingAttempts instance() {
+        if (_instance == null) {
+            _instance = new BookingAttempts();
+        }
+        return _instance;
+    }
+
+    /**
+     * Queues a booking to be made by a worker thread
+     * @param userId The user making the booking
+     * @param booking Makes the booking, returning the response to the booking request
+     * @return The attempt, or null if the queue is full
+     */
+    public BookingAttempt submit(long userId, Supplier<Response> booking) {
+        BookingAttempt attempt = new BookingAttempt(userId);
+        attempts.put(attempt.getId(), attempt);
+
+        try {
+            workers.execute(() -> {
+                try {
+                    attempt.complete(booking.get());
+                } catch (RuntimeException e) {
+                    _logger.error("Booking attempt " + attempt.getId() + " failed", e);
+                    attempt.complete(Response.serverError().build());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            attempts.remove(attempt.getId(), attempt);
+            rejected.increment();
+            return null;
+        }
+        return attempt;
+    }
+
+    /**
+     * @return The attempt, or null if there is no such attempt or it has been forgotten
+     */
+    public BookingAttempt get(String id) {
+        return attempts.get(id);
+    }
+
+    /**
+     * @return Number of bookings waiting for a worker
+     */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * @return Number of bookings turned away because the queue was full
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public void clear() {
+        attempts.clear();
+    }
+}
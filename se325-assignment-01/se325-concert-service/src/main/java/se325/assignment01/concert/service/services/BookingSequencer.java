@@ -0,0 +1,240 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.events.BookingEvents;
+import se325.assignment01.concert.service.util.RingBuffer;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Processes the bookings for a single performance one after another on a dedicated writer thread. Request threads
+ * put bookings onto a bounded {@link RingBuffer} and wait for the result. The writer takes a batch at a time,
+ * claims the seats of each booking, and commits all the bookings that got their seats in one transaction, so
+ * requests for a busy performance queue up rather than fighting over the same seats. If that transaction fails,
+ * each booking is committed in its own transaction instead, so only a booking that fails on its own gets an error.
+ * <p>
+ * A request that gives up waiting can cancel its booking, but only while it is still queued. Once the writer has
+ * taken a booking it is always seen through, so a request is never told its booking failed when it went through.
+ * The writer threads are stopped when the service is reset or shut down (see {@link #stopAll()}).
+ * <p>
+ * Only used when the booking engine is set to "sequencer" (see {@link ServiceConfig#BOOKING_ENGINE}).
+ */
+public class BookingSequencer {
+
+    private static final Logger _logger = LoggerFactory.getLogger(BookingSequencer.class);
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+    private static final Map<LocalDateTime, BookingSequencer> sequencers = new ConcurrentHashMap<>();
+
+    private final RingBuffer<Command> commands = new RingBuffer<>(ServiceConfig.SEQUENCER_CAPACITY);
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private BookingSequencer(LocalDateTime date) {
+        writer = new Thread(this::run, "booking-sequencer-" + date);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Gets the sequencer for a performance, starting it if this is the performance's first booking
+     * @param date Date of the performance
+     * @return The performance's sequencer
+     */
+    public static BookingSequencer forPerformance(LocalDateTime date) {
+        return sequencers.computeIfAbsent(date, BookingSequencer::new);
+    }
+
+    /**
+     * Stops every performance's writer thread. Bookings still queued are cancelled, so their requests fail rather
+     * than wait for a writer that has gone. A performance's next booking starts a new writer.
+     */
+    public static void stopAll() {
+        for (LocalDateTime date : sequencers.keySet()) {
+            BookingSequencer sequencer = sequencers.remove(date);
+            if (sequencer != null)
+                sequencer.stop();
+        }
+    }
+
+    /**
+     * Queues a booking to be processed by the writer thread
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @param performance The performance being booked
+     * @param seatIndexes The seats being booked, as produced by {@link PerformanceSeats#toSeatIndexes}
+     * @return A future that completes with the booking, or with null if the seats were already taken. Cancelling
+     * it only succeeds if the writer hasn't taken the booking yet. Null if the sequencer is too busy to accept the
+     * booking
+     */
+    public CompletableFuture<Booking> submit(User user, BookingRequestDTO bookingDTO, PerformanceSeats performance, int[] seatIndexes) {
+        Command command = new Command(user, bookingDTO, performance, seatIndexes);
+        if (!commands.offer(command))
+            return null;
+
+        LockSupport.unpark(writer);
+        // Stopped while the booking was being queued, so it may never be taken
+        if (!running)
+            command.result.cancel(false);
+        return command.result;
+    }
+
+    private void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(STOP_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(ServiceConfig.SEQUENCER_BATCH_SIZE);
+
+        while (running) {
+            // Submitting a booking unparks the writer, and an unpark before parking makes the park return at once
+            if (commands.drainTo(batch, ServiceConfig.SEQUENCER_BATCH_SIZE) == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                process(batch);
+            } catch (RuntimeException e) {
+                _logger.error("Failed to commit a batch of " + batch.size() + " bookings", e);
+            }
+            batch.clear();
+        }
+
+        commands.drainTo(batch, Integer.MAX_VALUE);
+        for (Command c : batch) {
+            c.result.cancel(false);
+        }
+    }
+
+    private void process(List<Command> batch) {
+        // Only this thread books seats for the performance (apart from holds), so seats are checked in queue order.
+        // Bookings whose requests have given up are skipped
+        List<Command> accepted = new ArrayList<>();
+        for (Command c : batch) {
+            if (!c.result.take())
+                continue;
+            if (c.performance.claim(c.seatIndexes))
+                accepted.add(c);
+            else
+                c.result.complete(null);
+        }
+
+        if (accepted.isEmpty())
+            return;
+
+        List<Booking> bookings = null;
+        try {
+            bookings = commit(accepted);
+        } catch (RuntimeException e) {
+            _logger.warn("Failed to commit a batch of " + accepted.size() + " bookings, committing them one at a time", e);
+        }
+
+        for (int i = 0; i < accepted.size(); i++) {
+            Command c = accepted.get(i);
+            Booking booking;
+            if (bookings != null) {
+                booking = bookings.get(i);
+            } else {
+                try {
+                    booking = BookingWriter.write(c.user, c.bookingDTO);
+                } catch (RuntimeException e) {
+                    _logger.error("Failed to commit a booking of seats " + c.bookingDTO.getSeatLabels(), e);
+                    c.performance.release(c.seatIndexes);
+                    c.result.completeExceptionally(e);
+                    continue;
+                }
+            }
+
+            // A booking made is committed, so its seats stay claimed whatever goes wrong from here
+            try {
+                if (booking == null) {
+                    // Booked by another service instance sharing the database
+                    BookingWriter.releaseTaken(c.performance, c.bookingDTO, c.seatIndexes);
+                } else {
+                    c.performance.recordBooked(c.seatIndexes);
+                    BookingEvents.instance().booked(c.performance, c.seatIndexes);
+                }
+            } catch (RuntimeException e) {
+                _logger.error("Failed to record the outcome of booking seats " + c.bookingDTO.getSeatLabels(), e);
+            }
+            c.result.complete(booking);
+        }
+    }
+
+    // Group commits bookings in one transaction
+    private static List<Booking> commit(List<Command> accepted) {
+        List<Booking> bookings = new ArrayList<>();
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (Command c : accepted) {
+                bookings.add(BookingWriter.write(em, c.user, c.bookingDTO));
+            }
+            em.getTransaction().commit();
+            return bookings;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * The result of a queued booking. Cancelling it and the writer taking the booking race for the same flag, so
+     * exactly one of them wins.
+     */
+    private static class PendingBooking extends CompletableFuture<Booking> {
+
+        private final AtomicBoolean taken = new AtomicBoolean(false);
+
+        // Called by the writer before processing the booking
+        private boolean take() {
+            return taken.compareAndSet(false, true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return taken.compareAndSet(false, true) && super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * A booking waiting to be processed, and the future its request thread is waiting on
+     */
+    private static class Command {
+
+        private final User user;
+        private final BookingRequestDTO bookingDTO;
+        private final PerformanceSeats performance;
+        private final int[] seatIndexes;
+        private final PendingBooking result = new PendingBooking();
+
+        private Command(User user, BookingRequestDTO bookingDTO, PerformanceSeats performance, int[] seatIndexes) {
+            this.user = user;
+            this.bookingDTO = bookingDTO;
+            this.performance = performance;
+            this.seatIndexes = seatIndexes;
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package se325.assignment01.concert.service.services;
+
+import org.hibernate.ReplicationMode;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.ConstraintViolationException;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.events.BookingEvents;
+import se325.assignment01.concert.service.journal.BookingJournal;
+import se325.assignment01.concert.service.journal.JournalEntry;
+import se325.assignment01.concert.service.util.ServiceConfig;
+import se325.assignment01.concert.service.util.VenueLayout;
+import se325.assignment01.concert.service.util.VenueLayouts;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes bookings to the database. The seats of a booking must already have been claimed in the
+ * {@link SeatAvailabilityIndex}, so no other request can be booking them at the same time and no database
+ * locks are needed.
+ * <p>
+ * Claims only cover this service instance, so every engine also checks the database, where another instance
+ * sharing it may have just booked the seats. The seats' versions catch an instance booking them between the check
+ * and the commit.
+ */
+public class BookingWriter {
+
+    private static final LongAdder optimisticRetries = new LongAdder();
+
+    /**
+     * Writes a booking of seats that have been claimed, and updates the performance's booked seat counters once it
+     * is committed. If the booking can't be written the seats are released again.
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @param performance The performance being booked
+     * @param seatIndexes The claimed seats
+     * @return The persisted booking, or null if the database already has one of the seats booked
+     * @throws OptimisticLockException if the optimistic engine kept clashing with other updates to the seats
+     */
+    public static Booking writeClaimed(User user, BookingRequestDTO bookingDTO, PerformanceSeats performance, int[] seatIndexes) {
+        Booking booking;
+        try {
+            if (ServiceConfig.isJournalEnabled())
+                booking = BookingJournal.instance().append(user, bookingDTO);
+            else if (ServiceConfig.isBulkUpdateEnabled())
+                booking = writeConditional(user, bookingDTO);
+            else if (ServiceConfig.isOptimisticEnabled())
+                booking = writeOptimistic(user, bookingDTO);
+            else
+                booking = write(user, bookingDTO);
+        } catch (RuntimeException e) {
+            // The seats were never booked, so hand them back
+            performance.release(seatIndexes);
+            throw e;
+        }
+
+        if (booking == null) {
+            releaseTaken(performance, bookingDTO, seatIndexes);
+            return null;
+        }
+
+        performance.recordBooked(seatIndexes);
+        BookingEvents.instance().booked(performance, seatIndexes);
+        return booking;
+    }
+
+    /**
+     * Releases claimed seats whose booking wasn't made because the database already had some of them booked. Those
+     * must have been booked by another service instance, whose event hasn't arrived yet, so they are marked booked
+     * here instead of being freed.
+     * @param performance The performance being booked
+     * @param bookingDTO The booking request
+     * @param seatIndexes The claimed seats
+     */
+    public static void releaseTaken(PerformanceSeats performance, BookingRequestDTO bookingDTO, int[] seatIndexes) {
+        performance.release(seatIndexes);
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            List<String> booked = em.createQuery("select s.label from Seat s where s.label in :label" +
+                    " AND s.date = :date AND s.isBooked = true", String.class)
+                    .setParameter("label", bookingDTO.getSeatLabels())
+                    .setParameter("date", bookingDTO.getDate())
+                    .getResultList();
+            if (!booked.isEmpty())
+                performance.recordBookedElsewhere(performance.toSeatIndexes(booked));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Writes a booking to the database in its own transaction, marking the seats booked with one conditional
+     * bulk UPDATE rather than one UPDATE per seat. The number of rows updated says whether every seat was still
+     * unbooked, so the database has the final say even if another service instance shares it. With lazy seat
+     * storage there are no unbooked seat rows to update, so this is the same as {@link #write(User, BookingRequestDTO)}.
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @return The persisted booking, or null if any of the seats were already booked
+     */
+    public static Booking writeConditional(User user, BookingRequestDTO bookingDTO) {
+        if (ServiceConfig.isLazySeatStorage())
+            return write(user, bookingDTO);
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+            // "versioned" bumps the seats' versions, so optimistic bookings of the same seats see the change
+            int numBooked = em.createQuery("update versioned Seat s set s.isBooked = true where s.label in :label" +
+                    " AND s.date = :date AND s.isBooked = false")
+                    .setParameter("label", bookingDTO.getSeatLabels())
+                    .setParameter("date", bookingDTO.getDate())
+                    .executeUpdate();
+
+            // Some of the seats were booked already (or don't exist). Rolling back undoes the ones we did book
+            if (numBooked != bookingDTO.getSeatLabels().size())
+                return null;
+
+            Booking finalBooking = new Booking(bookingDTO.getConcertId(), bookingDTO.getDate(),
+                    new HashSet<>(loadSeats(em, bookingDTO)));
+            finalBooking.setUser(user);
+            em.persist(finalBooking);
+            em.getTransaction().commit();
+
+            return finalBooking;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Writes a booking to the database in its own transaction without locking its seats. If another transaction
+     * updates any of the seats first, the seats' versions no longer match when committing, and the booking is tried
+     * again after a short random wait (so clashing requests don't keep clashing). A seat that is already booked
+     * when the seats are read is a real conflict, so the booking fails straight away rather than being retried.
+     * With lazy seat storage there are no seat rows to version, so this is the same as
+     * {@link #write(User, BookingRequestDTO)}.
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @return The persisted booking, or null if any of the seats are already booked
+     * @throws OptimisticLockException if the booking still clashed after {@link ServiceConfig#OPTIMISTIC_MAX_ATTEMPTS}
+     */
+    public static Booking writeOptimistic(User user, BookingRequestDTO bookingDTO) {
+        if (ServiceConfig.isLazySeatStorage())
+            return write(user, bookingDTO);
+
+        for (int attempt = 1; ; attempt++) {
+            EntityManager em = PersistenceManager.instance().createEntityManager();
+
+            try {
+                em.getTransaction().begin();
+                List<Seat> bookingSeats = loadSeats(em, bookingDTO);
+                if (bookingSeats.size() != bookingDTO.getSeatLabels().size())
+                    return null;
+
+                for (Seat s : bookingSeats) {
+                    if (s.isBooked())
+                        return null;
+                    s.setBooked(true);
+                }
+
+                Booking finalBooking = new Booking(bookingDTO.getConcertId(), bookingDTO.getDate(), new HashSet<>(bookingSeats));
+                finalBooking.setUser(user);
+                em.persist(finalBooking);
+                em.getTransaction().commit();
+
+                return finalBooking;
+            } catch (RuntimeException e) {
+                if (!isVersionConflict(e))
+                    throw e;
+                if (attempt >= ServiceConfig.OPTIMISTIC_MAX_ATTEMPTS)
+                    throw new OptimisticLockException("Booking still clashed after " + attempt + " attempts", e);
+            } finally {
+                if (em.getTransaction().isActive())
+                    em.getTransaction().rollback();
+                em.close();
+            }
+
+            optimisticRetries.increment();
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * @return How many times optimistic bookings have been retried after clashing with another update
+     */
+    public static long getOptimisticRetries() {
+        return optimisticRetries.sum();
+    }
+
+    /**
+     * Writes a booking to the database in its own transaction. With lazy seat storage the seats' rows are inserted,
+     * and if another booking (e.g. on another service instance) has inserted one of them first the seats' unique
+     * constraint fails the insert. Otherwise the seats are only booked if they are unbooked when read, and their
+     * versions fail the commit if another booking changes them in between.
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @return The persisted booking, or null if one of the seats is already booked
+     */
+    public static Booking write(User user, BookingRequestDTO bookingDTO) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+            Booking finalBooking = write(em, user, bookingDTO);
+            if (finalBooking == null)
+                return null;
+            em.getTransaction().commit();
+
+            return finalBooking;
+        } catch (PersistenceException e) {
+            if (ServiceConfig.isLazySeatStorage() ? isConstraintViolation(e) : isVersionConflict(e))
+                return null;
+            throw e;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Writes several bookings for a user to the database in one transaction. With hibernate.jdbc.batch_size set,
+     * the seat updates and booking inserts are sent to the database in JDBC batches. When bookings are journalled
+     * they are only appended to the journal.
+     * @param user The user making the bookings
+     * @param bookingDTOs The booking requests
+     * @return The persisted bookings, in the same order as the requests. A booking is null if one of its seats was
+     * already booked in the database, and the others are still made
+     */
+    public static List<Booking> writeAll(User user, List<BookingRequestDTO> bookingDTOs) {
+        if (ServiceConfig.isJournalEnabled())
+            return BookingJournal.instance().appendAll(user, bookingDTOs);
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+            List<Booking> bookings = new ArrayList<>();
+            for (BookingRequestDTO bookingDTO : bookingDTOs) {
+                bookings.add(write(em, user, bookingDTO));
+            }
+            em.getTransaction().commit();
+
+            return bookings;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Writes a booking as part of the caller's transaction, so several bookings can be committed together
+     * @param em An EntityManager with an active transaction
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @return The booking, which will have an ID once the transaction is flushed, or null if one of the seats is
+     * already booked in the database. Nothing is written for it then
+     */
+    public static Booking write(EntityManager em, User user, BookingRequestDTO bookingDTO) {
+        List<Seat> bookingSeats = ServiceConfig.isLazySeatStorage()
+                ? createSeats(bookingDTO)
+                : loadUnbookedSeats(em, bookingDTO);
+        if (bookingSeats == null)
+            return null;
+
+        // Mark all the seats as booked
+        for (Seat s : bookingSeats) {
+            s.setBooked(true);
+        }
+
+        Booking finalBooking = new Booking(bookingDTO.getConcertId(), bookingDTO.getDate(), new HashSet<>(bookingSeats));
+        finalBooking.setUser(user);
+        em.persist(finalBooking);
+
+        return finalBooking;
+    }
+
+    /**
+     * Writes bookings from the {@link BookingJournal} to the database in one transaction. They keep the IDs they
+     * were given when journalled. Bookings already in the database, e.g. written just before the service stopped,
+     * are skipped, so an entry can safely be written more than once. If another service instance has booked any
+     * of an entry's seats the whole transaction fails, and the journal ends up dead-lettering the entry.
+     * @param entries The journalled bookings
+     */
+    public static void writeJournalled(List<JournalEntry> entries) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+            List<Long> ids = new ArrayList<>();
+            for (JournalEntry entry : entries) {
+                ids.add(entry.getBookingId());
+            }
+            Set<Long> written = new HashSet<>(em.createQuery("select b.id from Booking b where b.id in :ids", Long.class)
+                    .setParameter("ids", ids)
+                    .getResultList());
+
+            Session session = em.unwrap(Session.class);
+            for (JournalEntry entry : entries) {
+                if (written.contains(entry.getBookingId()))
+                    continue;
+
+                BookingRequestDTO bookingDTO = new BookingRequestDTO(entry.getConcertId(), entry.getDate(), entry.getSeatLabels());
+                List<Seat> bookingSeats;
+                if (ServiceConfig.isLazySeatStorage()) {
+                    bookingSeats = createSeats(bookingDTO);
+                    bookingSeats.forEach(em::persist);
+                } else {
+                    bookingSeats = loadUnbookedSeats(em, bookingDTO);
+                    if (bookingSeats == null)
+                        throw new IllegalStateException("Seats of journalled booking " + entry.getBookingId()
+                                + " are already booked");
+                    for (Seat s : bookingSeats) {
+                        s.setBooked(true);
+                    }
+                }
+
+                Booking finalBooking = new Booking(entry.getConcertId(), entry.getDate(), new HashSet<>(bookingSeats));
+                finalBooking.setId(entry.getBookingId());
+                finalBooking.setUser(em.getReference(User.class, entry.getUserId()));
+
+                // Persisting would generate a new ID, replicating inserts the booking with the one it has
+                session.replicate(finalBooking, ReplicationMode.EXCEPTION);
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Deletes a booking as part of the caller's transaction and frees its seats. However many seats the booking has,
+     * this takes a fixed number of statements: one to unlink the seats, and one to mark them unbooked (or, with
+     * lazy seat storage, to delete them).
+     * @param em An EntityManager with an active transaction
+     * @param booking The booking, loaded by em
+     */
+    public static void delete(EntityManager em, Booking booking) {
+        List<Long> seatIds = new ArrayList<>();
+        for (Seat s : booking.getSeats()) {
+            seatIds.add(s.getId());
+        }
+
+        // The booking's links to its seats have to be gone before the seats can be deleted
+        em.remove(booking);
+        em.flush();
+
+        if (seatIds.isEmpty())
+            return;
+
+        String statement = ServiceConfig.isLazySeatStorage()
+                ? "delete from Seat s where s.id in :ids"
+                : "update versioned Seat s set s.isBooked = false where s.id in :ids";
+        em.createQuery(statement).setParameter("ids", seatIds).executeUpdate();
+    }
+
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isVersionConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException || t instanceof StaleStateException)
+                return true;
+        }
+        return false;
+    }
+
+    // Waits a random time up to the backoff limit, which doubles with each attempt
+    private static void backOff(int attempt) {
+        long limit = ServiceConfig.OPTIMISTIC_BACKOFF_MILLIS << Math.min(attempt - 1, 16);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(limit + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry a booking", e);
+        }
+    }
+
+    private static List<Seat> loadSeats(EntityManager em, BookingRequestDTO bookingDTO) {
+        TypedQuery<Seat> seatTypedQuery = em.createQuery("select s from Seat s where s.label in :label" +
+                " AND s.date = :date", Seat.class)
+                .setParameter("label", bookingDTO.getSeatLabels())
+                .setParameter("date", bookingDTO.getDate());
+        return seatTypedQuery.getResultList();
+    }
+
+    // Null if any of the seats doesn't exist or is already booked
+    private static List<Seat> loadUnbookedSeats(EntityManager em, BookingRequestDTO bookingDTO) {
+        List<Seat> seats = em.createQuery("select s from Seat s where s.label in :label" +
+                " AND s.date = :date AND s.isBooked = false", Seat.class)
+                .setParameter("label", bookingDTO.getSeatLabels())
+                .setParameter("date", bookingDTO.getDate())
+                .getResultList();
+        return seats.size() == bookingDTO.getSeatLabels().size() ? seats : null;
+    }
+
+    // With lazy seat storage the seats don't exist until now. They are persisted along with the booking.
+    private static List<Seat> createSeats(BookingRequestDTO bookingDTO) {
+        VenueLayout layout = VenueLayouts.instance().forConcert(bookingDTO.getConcertId());
+
+        List<Seat> bookingSeats = new ArrayList<>();
+        for (String label : bookingDTO.getSeatLabels()) {
+            bookingSeats.add(layout.createSeat(bookingDTO.getDate(), layout.seatIndexOf(label), true));
+        }
+        return bookingSeats;
+    }
+
+    private BookingWriter() {}
+}
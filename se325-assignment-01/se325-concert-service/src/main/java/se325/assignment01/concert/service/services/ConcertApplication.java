@@ -3,6 +3,7 @@ package se325.assignment01.concert.service.services;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
 
+import se325.assignment01.concert.service.events.BookingEvents;
 import se325.assignment01.concert.service.util.ConcertUtils;
 
 import java.util.HashSet;
@@ -24,6 +25,9 @@ public class ConcertApplication extends Application {
         singletons.add(PersistenceManager.instance());
 
         ConcertUtils.initConcerts();
+
+        // Start applying bookings made by other service instances
+        BookingEvents.instance();
     }
 
     @Override
@@ -3,28 +3,51 @@ package se325.assignment01.concert.service.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.*;
+import se325.assignment01.concert.common.types.BookingOutcome;
 import se325.assignment01.concert.common.types.BookingStatus;
+import se325.assignment01.concert.service.admission.WaitingRoom;
+import se325.assignment01.concert.service.admission.WaitingRooms;
+import se325.assignment01.concert.service.availability.BestAvailableAllocator;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.availability.SeatChangeLog;
+import se325.assignment01.concert.service.availability.SeatHold;
+import se325.assignment01.concert.service.availability.SeatHoldRegistry;
 import se325.assignment01.concert.service.domain.*;
+import se325.assignment01.concert.service.events.BookingEvents;
 import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
+import se325.assignment01.concert.service.journal.BookingJournal;
+import se325.assignment01.concert.service.mapper.AvailabilitySummaryMapper;
+import se325.assignment01.concert.service.mapper.BookingAttemptMapper;
 import se325.assignment01.concert.service.mapper.BookingMapper;
 import se325.assignment01.concert.service.mapper.ConcertMapper;
 import se325.assignment01.concert.service.mapper.PerformerMapper;
+import se325.assignment01.concert.service.mapper.SeatAvailabilityMapper;
+import se325.assignment01.concert.service.mapper.SeatChangesMapper;
+import se325.assignment01.concert.service.mapper.SeatHoldMapper;
 import se325.assignment01.concert.service.mapper.SeatMapper;
-import se325.assignment01.concert.service.util.TheatreLayout;
+import se325.assignment01.concert.service.mapper.ServiceMetricsMapper;
+import se325.assignment01.concert.service.mapper.WaitingRoomTicketMapper;
+import se325.assignment01.concert.service.subscription.NotificationDispatcher;
+import se325.assignment01.concert.service.subscription.SeatEventStream;
+import se325.assignment01.concert.service.subscription.SeatEventStreams;
+import se325.assignment01.concert.service.subscription.SubscriptionRegistry;
+import se325.assignment01.concert.service.util.ServiceConfig;
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
 
 
 @Path("/concert-service")
@@ -33,10 +56,11 @@ import java.util.concurrent.Executors;
 public class ConcertResource {
 
     private static final String AUTH_COOKIE = "auth";
-    private static final ConcurrentHashMap<LocalDateTime, List<Subscription>> activeSubscriptions = new ConcurrentHashMap<>();
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String WAITING_ROOM_TOKEN = "Waiting-Room-Token";
+    private static final String BITMAP_ETAG_SUFFIX = "-bin";
     private static final Logger _logger = LoggerFactory.getLogger(ConcertResource.class);
-    private final ExecutorService threadpool = Executors.newCachedThreadPool();
-    private static final int MAX_THEATRE_SEATS = 120;
 
     /**
      * Gets a specific concert
@@ -216,11 +240,18 @@ public class ConcertResource {
             user = userTypedQuery.getSingleResult();
 
             // Set Authentication Token for user
+            String previousToken = user.getAuthenticationToken();
             String token = UUID.randomUUID().toString();
             user.setAuthenticationToken(token);
             em.merge(user);
             em.getTransaction().commit();
 
+            // The previous token no longer works, and the new one is remembered so requests using it skip the database
+            if (previousToken != null)
+                AuthenticationTokens.instance().invalidate(previousToken);
+            em.detach(user);
+            AuthenticationTokens.instance().put(token, user);
+
             NewCookie cookieNew = new NewCookie(AUTH_COOKIE, token);
             return Response.ok().cookie(cookieNew).build();
         } catch (NoResultException e) {
@@ -233,7 +264,8 @@ public class ConcertResource {
     }
 
     /**
-     * Helper function that determines if user exists with associates cookie
+     * Helper function that determines if user exists with associates cookie. Tokens are remembered by
+     * {@link AuthenticationTokens}, so only the first request with a token looks it up in the database.
      * @param cookie HTTP cookie that stores user related data when logged in
      * @return
      */
@@ -243,6 +275,10 @@ public class ConcertResource {
         if (cookie == null)
             return null;
 
+        User remembered = AuthenticationTokens.instance().get(cookie.getValue());
+        if (remembered != null)
+            return remembered;
+
         EntityManager em = PersistenceManager.instance().createEntityManager();
         User user;
         try {
@@ -254,6 +290,9 @@ public class ConcertResource {
             user = userTypedQuery.getSingleResult();
             em.getTransaction().commit();
 
+            // e.g. a token issued before a restart, or by another service instance
+            em.detach(user);
+            AuthenticationTokens.instance().put(cookie.getValue(), user);
             return user;
         } catch (NoResultException e) {
             return null;
@@ -266,123 +305,407 @@ public class ConcertResource {
 
     /**
      * A helper function that notifies subscribers when seats for a particular concert reaches
-     * a certain limit
+     * a certain limit, and sends the change to clients streaming the concert's seats
      * @param date A Date of a specific Concert
      */
     public void subscriptionChecker(LocalDateTime date) {
 
-        // A new thread pool is used so this long-running task does not impact user's experience
-        threadpool.submit(() -> {
-            EntityManager em = PersistenceManager.instance().createEntityManager();
-            try {
-                em.getTransaction().begin();
-                List<Subscription> currentSubscriptions = activeSubscriptions.get(date);
-
-                // If there are no subscriptions for "this" concert, then no need to notify as there is
-                // no-one to notify
-                if (currentSubscriptions == null)
-                    return;
-
-                // Get Seats for "this" concert that are booked (isBooked = true)
-                TypedQuery<Seat> seatTypedQuery = em.createQuery("SELECT s FROM Seat s WHERE s.date = :date" +
-                        " AND s.isBooked = :booked", Seat.class)
-                        .setParameter("date", date)
-                        .setParameter("booked", true);
-
-                double bookedSeats = (seatTypedQuery.getResultList().size() / (double) MAX_THEATRE_SEATS);
-                int bookedSeatsPercentage = (int) (bookedSeats * 100);
-                List<Subscription> newSubscriptions = new ArrayList<>();
-
-                // Looping through subscriptions and updating them
-                for (Subscription s: currentSubscriptions) {
-                        // Checking whether limit has been exceeded
-                        int limit = s.subscriptionInfo.getPercentageBooked();
-                        if (bookedSeatsPercentage >= limit) {
-                            int numRemainingSeats = MAX_THEATRE_SEATS - seatTypedQuery.getResultList().size();
-                            s.response.resume(new ConcertInfoNotificationDTO(numRemainingSeats));
-                        } else {
-                            newSubscriptions.add(s);
-                        }
-                }
-
-                // Remove the current subscriptions and replace them with the updates subscriptions
-                activeSubscriptions.remove(date);
-                activeSubscriptions.put(date, newSubscriptions);
-                em.getTransaction().commit();
-            } finally {
-                em.close();
-            }
-        });
+        // Only marks the concert as changed, so a burst of bookings is looked at once rather than once per booking
+        NotificationDispatcher.instance().changed(date);
     }
 
     /**
-     * Makes a booking for a logged in user. Validates to make sure booking is correct and notifies user
+     * Makes a booking for a logged in user. Validates to make sure booking is correct and notifies user.
+     * Seats are claimed in memory first, so only the request that wins the seats ever touches the database.
+     * If an Idempotency-Key header is given and the user has already made a booking with that key, the original
+     * booking's 201 and location are returned without booking again. A 409 error is returned if a booking with
+     * the key is still being made.
+     * A 400 error is returned if the Idempotency-Key is longer than 255 characters.
+     * If the request has a "Prefer: respond-async" header, the booking is made in the background and a 202 is
+     * returned straight away, with the location of a booking attempt to look up the outcome from. A 503 error is
+     * returned if too many bookings are already waiting to be made.
+     * A 429 error is returned if the waiting room is enabled and the Waiting-Room-Token hasn't been admitted.
+     * With the optimistic booking engine, a 409 error is also returned if the booking kept clashing with other
+     * updates to its seats, and is worth trying again.
      * @param cookie
+     * @param idempotencyKey
+     * @param prefer
+     * @param waitingRoomToken
      * @param bookingDTO
      * @return
      */
     @POST
     @Path("/bookings")
-    public Response createNewBooking(@CookieParam("auth") Cookie cookie, BookingRequestDTO bookingDTO) {
+    public Response createNewBooking(@CookieParam("auth") Cookie cookie, @HeaderParam("Idempotency-Key") String idempotencyKey,
+                                     @HeaderParam("Prefer") String prefer, @HeaderParam(WAITING_ROOM_TOKEN) String waitingRoomToken,
+                                     BookingRequestDTO bookingDTO) {
         User user = authoriseUser(cookie);
 
         if (user == null) {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
 
-        EntityManager em = PersistenceManager.instance().createEntityManager();
+        if (bookingDTO.getDate() != null && !WaitingRooms.instance().isAdmitted(bookingDTO.getDate(), waitingRoomToken))
+            return Response.status(Response.Status.TOO_MANY_REQUESTS).build();
+
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH))
+            return Response.status(Response.Status.BAD_REQUEST).build();
+
+        if (prefer == null || !prefer.contains(RESPOND_ASYNC))
+            return bookIdempotently(user, idempotencyKey, bookingDTO);
 
+        // Hand the booking to a worker so this thread isn't held up
+        BookingAttempt attempt = BookingAttempts.instance().submit(user.getId(),
+                () -> bookIdempotently(user, idempotencyKey, bookingDTO));
+        if (attempt == null)
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+
+        return Response.accepted()
+                .location(URI.create("/concert-service/booking-attempts/" + attempt.getId()))
+                .header("Preference-Applied", RESPOND_ASYNC)
+                .build();
+    }
+
+    /**
+     * A helper function that makes a booking once the user has been authenticated, unless it has already been made
+     * with the same idempotency key
+     * @param user The user making the booking
+     * @param idempotencyKey The key sent by the user, or null if none was sent
+     * @param bookingDTO The booking request
+     * @return 201 with the booking's location, or the error to send back
+     */
+    private Response bookIdempotently(User user, String idempotencyKey, BookingRequestDTO bookingDTO) {
+        if (idempotencyKey == null)
+            return bookSeats(user, bookingDTO);
+
+        CompletableFuture<URI> attempt = new CompletableFuture<>();
+        CompletableFuture<URI> previous = IdempotentBookings.instance().start(user.getId(), idempotencyKey, attempt);
+        if (previous != null) {
+            // A retry. Send back the original booking rather than booking again
+            URI location = previous.getNow(null);
+            if (location == null)
+                return Response.status(Response.Status.CONFLICT).build();
+            return Response.created(location).header("Idempotent-Replayed", true).build();
+        }
+
+        Response response = null;
         try {
-            em.getTransaction().begin();
+            response = bookSeats(user, bookingDTO);
+            return response;
+        } finally {
+            IdempotentBookings.instance().finish(user.getId(), idempotencyKey, attempt, response);
+        }
+    }
 
-            // Validate Concert
-            Concert concert = em.find(Concert.class, bookingDTO.getConcertId(), LockModeType.PESSIMISTIC_READ);
-            if (concert == null || (!(concert.getDates().contains(bookingDTO.getDate()))))
-                return Response.status(Response.Status.BAD_REQUEST).build();
-            em.getTransaction().commit();
+    /**
+     * A helper function that makes a booking once the user has been authenticated
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @return 201 with the booking's location, or the error to send back
+     */
+    private Response bookSeats(User user, BookingRequestDTO bookingDTO) {
 
-            // validate seats
-            em.getTransaction().begin();
-            TypedQuery<Seat> seatTypedQuery = em.createQuery("select s from Seat s where s.label in :label" +
-                        " AND s.date = :date AND s.isBooked = :target", Seat.class)
-                        .setParameter("label", bookingDTO.getSeatLabels())
-                        .setParameter("date", bookingDTO.getDate())
-                        .setParameter("target", false)
-                        .setLockMode(LockModeType.PESSIMISTIC_WRITE);
-            List<Seat> bookingSeats = seatTypedQuery.getResultList();
-
-            if (bookingSeats == null || bookingSeats.isEmpty() || bookingSeats.size() != bookingDTO.getSeatLabels().size())
+        // Validate Concert
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(bookingDTO.getDate());
+        if (performance == null || performance.getConcertId() != bookingDTO.getConcertId())
+            return Response.status(Response.Status.BAD_REQUEST).build();
+
+        int[] seatIndexes = performance.toSeatIndexes(bookingDTO.getSeatLabels());
+        if (seatIndexes == null || seatIndexes.length == 0)
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        Booking finalBooking;
+        if (ServiceConfig.isSequencerEnabled()) {
+            // The performance's writer thread claims the seats and commits the booking, we just wait for it
+            CompletableFuture<Booking> result = BookingSequencer.forPerformance(bookingDTO.getDate())
+                    .submit(user, bookingDTO, performance, seatIndexes);
+            if (result == null)
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+
+            try {
+                finalBooking = awaitSequenced(result);
+            } catch (CancellationException e) {
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+            } catch (ExecutionException e) {
+                throw new InternalServerErrorException(e.getCause());
+            }
+
+            if (finalBooking == null)
+                return Response.status(Response.Status.FORBIDDEN).build();
+        } else {
+            // Claim seats. Losing requests are rejected here without taking any database locks
+            if (!performance.claim(seatIndexes))
                 return Response.status(Response.Status.FORBIDDEN).build();
 
-            // Mark all the seats as booked as the seats and concerts are valid and merge it to the database
-            for (Seat s : bookingSeats) {
-                s.setBooked(true);
-                em.merge(s);
+            try {
+                finalBooking = BookingWriter.writeClaimed(user, bookingDTO, performance, seatIndexes);
+            } catch (OptimisticLockException e) {
+                return Response.status(Response.Status.CONFLICT).build();
             }
-            em.getTransaction().commit();
+            if (finalBooking == null)
+                return Response.status(Response.Status.FORBIDDEN).build();
+        }
 
-            em.getTransaction().begin();
-            // Convert List to Set
-            Set<Seat> tempSeatSet = new HashSet<>(bookingSeats);
-            tempSeatSet.addAll(bookingSeats);
-
-            // As all the requirements have been met, now can process the booking
-            Booking finalBooking = new Booking(bookingDTO.getConcertId(), bookingDTO.getDate(), tempSeatSet);
-            finalBooking.setUser(user);
-            em.persist(finalBooking);
-            em.getTransaction().commit();
+        // A method that determines whether to notify users about their subscription as the number of
+        // available seats has changed because of "this" new booking.
+        subscriptionChecker(finalBooking.getDate());
+
+        return Response.created(URI.create("/concert-service/bookings/" + finalBooking.getId())).build();
+    }
 
-            // A method that determines whether to notify users about their subscription as the number of
-            // available seats has changed because of "this" new booking.
-            subscriptionChecker(finalBooking.getDate());
+    /**
+     * Waits for a booking queued on a {@link BookingSequencer}. If it is still queued once the wait is up it is
+     * cancelled, otherwise the writer has taken it, and it's waited for until it is committed or fails, so the
+     * response always matches what happened to the booking.
+     * @param result The queued booking's result
+     * @return The booking, or null if the seats were already taken
+     * @throws CancellationException if the booking was cancelled without being made
+     */
+    private static Booking awaitSequenced(Future<Booking> result) throws InterruptedException, ExecutionException {
+        try {
+            return result.get(ServiceConfig.SEQUENCER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (result.cancel(false))
+                throw new CancellationException("Gave up waiting for the booking");
+            return result.get();
+        }
+    }
 
-            return Response.created(URI.create("/concert-service/bookings/" + finalBooking.getId())).build();
-        } finally {
-            // If any transactions are still active then commit it so the pessimistic write locks are released
-            if (em.getTransaction().isActive())
-                em.getTransaction().commit();
-            em.close();
+    /**
+     * Get the outcome of a booking submitted with "Prefer: respond-async". If the booking hasn't been made yet,
+     * waits up to the given number of seconds for it before answering.
+     * A 401 error is returned when not authenticated, a 404 error if there is no such attempt (or it has been
+     * forgotten), and a 403 error if the attempt belongs to another user
+     * @param response
+     * @param id ID of the booking attempt
+     * @param waitSeconds How long to wait for the booking to be made, at most {@link ServiceConfig#MAX_LONG_POLL_SECONDS}
+     * @param cookie
+     * @param uriInfo
+     */
+    @GET
+    @Path("/booking-attempts/{id}")
+    public void getBookingAttempt(@Suspended AsyncResponse response, @PathParam("id") String id,
+                                  @QueryParam("wait") int waitSeconds, @CookieParam("auth") Cookie cookie,
+                                  @Context UriInfo uriInfo) {
+        User user = authoriseUser(cookie);
+
+        if (user == null) {
+            response.resume(Response.status(Response.Status.UNAUTHORIZED).build());
+            return;
+        }
+
+        BookingAttempt attempt = BookingAttempts.instance().get(id);
+        if (attempt == null) {
+            response.resume(Response.status(Response.Status.NOT_FOUND).build());
+            return;
+        }
+        if (attempt.getUserId() != user.getId()) {
+            response.resume(Response.status(Response.Status.FORBIDDEN).build());
+            return;
+        }
+
+        // The injected UriInfo only works on the request thread, so the base URI is read before the long poll
+        URI baseUri = uriInfo.getBaseUri();
+
+        if (attempt.isDone() || waitSeconds <= 0) {
+            response.resume(BookingAttemptMapper.domainToDTO(attempt, baseUri));
+            return;
+        }
+
+        // Long poll: answer once the booking has been made, or with the attempt still pending if that takes too long
+        response.setTimeoutHandler(r -> r.resume(BookingAttemptMapper.domainToDTO(attempt, baseUri)));
+        response.setTimeout(Math.min(waitSeconds, ServiceConfig.MAX_LONG_POLL_SECONDS), TimeUnit.SECONDS);
+        attempt.whenDone(() -> response.resume(BookingAttemptMapper.domainToDTO(attempt, baseUri)));
+    }
+
+    /**
+     * Makes several bookings for a logged in user at once, e.g. for every date of a concert. Each booking is
+     * made or refused on its own, and the outcome of each is returned in the same order as the requests.
+     * Seats are claimed in order of date and then seat, and all the bookings that got their seats are written
+     * in one transaction. If that transaction fails, each booking is written in its own transaction instead, so a
+     * booking that clashes in the database only fails itself.
+     * A 401 error is returned when not authenticated, and a 400 error if there are no bookings or more
+     * than {@link ServiceConfig#BATCH_BOOKING_MAX_SIZE}. A booking for a date whose waiting room hasn't admitted
+     * any of the Waiting-Room-Token tokens is refused as NotAdmitted.
+     * @param cookie
+     * @param waitingRoomTokens Comma separated waiting room tokens, one for each date being booked
+     * @param bookingDTOs
+     * @return The outcome of each booking
+     */
+    @POST
+    @Path("/bookings/batch")
+    public Response createBookings(@CookieParam("auth") Cookie cookie, @HeaderParam(WAITING_ROOM_TOKEN) String waitingRoomTokens,
+                                   List<BookingRequestDTO> bookingDTOs) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        if (bookingDTOs == null || bookingDTOs.isEmpty() || bookingDTOs.size() > ServiceConfig.BATCH_BOOKING_MAX_SIZE)
+            return Response.status(Response.Status.BAD_REQUEST).build();
+
+        BookingOutcomeDTO[] outcomes = new BookingOutcomeDTO[bookingDTOs.size()];
+        PerformanceSeats[] performances = new PerformanceSeats[bookingDTOs.size()];
+        int[][] seatIndexes = new int[bookingDTOs.size()][];
+        List<Integer> valid = new ArrayList<>();
+
+        // Validate each booking
+        for (int i = 0; i < bookingDTOs.size(); i++) {
+            BookingRequestDTO bookingDTO = bookingDTOs.get(i);
+            performances[i] = bookingDTO == null || bookingDTO.getDate() == null ? null
+                    : SeatAvailabilityIndex.instance().get(bookingDTO.getDate());
+
+            if (performances[i] == null || performances[i].getConcertId() != bookingDTO.getConcertId()) {
+                outcomes[i] = new BookingOutcomeDTO(BookingOutcome.InvalidConcert, null);
+                continue;
+            }
+
+            if (!WaitingRooms.instance().isAdmitted(bookingDTO.getDate(), waitingRoomTokens)) {
+                outcomes[i] = new BookingOutcomeDTO(BookingOutcome.NotAdmitted, null);
+                continue;
+            }
+
+            seatIndexes[i] = performances[i].toSeatIndexes(bookingDTO.getSeatLabels());
+            if (seatIndexes[i] == null || seatIndexes[i].length == 0) {
+                outcomes[i] = new BookingOutcomeDTO(BookingOutcome.SeatsUnavailable, null);
+                continue;
+            }
+            valid.add(i);
+        }
+
+        // Claim seats in a fixed global order (date, then first seat), so overlapping batches resolve the same way
+        valid.sort(Comparator.<Integer, LocalDateTime>comparing(i -> performances[i].getDate())
+                .thenComparingInt(i -> seatIndexes[i][0]));
+        List<Integer> claimed = new ArrayList<>();
+        for (int i : valid) {
+            if (performances[i].claim(seatIndexes[i]))
+                claimed.add(i);
+            else
+                outcomes[i] = new BookingOutcomeDTO(BookingOutcome.SeatsUnavailable, null);
+        }
+
+        if (!claimed.isEmpty()) {
+            List<BookingRequestDTO> claimedDTOs = new ArrayList<>();
+            for (int i : claimed) {
+                claimedDTOs.add(bookingDTOs.get(i));
+            }
+
+            List<Booking> bookings = null;
+            try {
+                bookings = BookingWriter.writeAll(user, claimedDTOs);
+            } catch (RuntimeException e) {
+                _logger.warn("Failed to write a batch of " + claimed.size() + " bookings, writing them one at a time", e);
+            }
+
+            if (bookings != null) {
+                for (int b = 0; b < bookings.size(); b++) {
+                    int i = claimed.get(b);
+                    if (bookings.get(b) == null) {
+                        // Booked by another service instance sharing the database
+                        BookingWriter.releaseTaken(performances[i], bookingDTOs.get(i), seatIndexes[i]);
+                        outcomes[i] = new BookingOutcomeDTO(BookingOutcome.SeatsUnavailable, null);
+                        continue;
+                    }
+                    performances[i].recordBooked(seatIndexes[i]);
+                    BookingEvents.instance().booked(performances[i], seatIndexes[i]);
+                    outcomes[i] = new BookingOutcomeDTO(BookingOutcome.Booked, bookings.get(b).getId());
+                }
+            } else {
+                // The failed transaction wrote nothing, and each booking still holds its claim
+                for (int i : claimed) {
+                    outcomes[i] = writeBatchItem(user, bookingDTOs.get(i), performances[i], seatIndexes[i]);
+                }
+            }
+
+            claimed.stream().map(i -> performances[i].getDate()).distinct().forEach(this::subscriptionChecker);
+        }
+
+        GenericEntity<List<BookingOutcomeDTO>> entity = new GenericEntity<List<BookingOutcomeDTO>>(Arrays.asList(outcomes)) {};
+        return Response.ok(entity).build();
+    }
+
+    /**
+     * A helper function that writes one booking of a batch in its own transaction, once the batch's transaction
+     * has failed
+     * @param user The user making the booking
+     * @param bookingDTO The booking request
+     * @param performance The performance being booked
+     * @param seatIndexes The booking's claimed seats
+     * @return The booking's outcome
+     */
+    private BookingOutcomeDTO writeBatchItem(User user, BookingRequestDTO bookingDTO, PerformanceSeats performance,
+                                             int[] seatIndexes) {
+        try {
+            Booking booking = BookingWriter.writeClaimed(user, bookingDTO, performance, seatIndexes);
+            if (booking == null)
+                return new BookingOutcomeDTO(BookingOutcome.SeatsUnavailable, null);
+            return new BookingOutcomeDTO(BookingOutcome.Booked, booking.getId());
+        } catch (RuntimeException e) {
+            _logger.error("Failed to write a booking of seats " + bookingDTO.getSeatLabels() + " on "
+                    + bookingDTO.getDate(), e);
+            return new BookingOutcomeDTO(BookingOutcome.Failed, null);
+        }
+    }
+
+    /**
+     * Books the best available seats in a price band for a logged in user, so the user doesn't have to pick exact
+     * seats. Seats next to each other are chosen if possible.
+     * A 401 error is returned when not authenticated, a 400 error for a nonexistent concert, date or price band or
+     * for more seats than the price band has, a 403 error if there aren't enough seats left in the price band, a 409
+     * error if the optimistic booking engine kept clashing with other updates to the seats, and a 429 error if the
+     * Waiting-Room-Token hasn't been admitted
+     * @param cookie
+     * @param waitingRoomToken
+     * @param requestDTO The concert, date, price band and number of seats wanted
+     * @return
+     */
+    @POST
+    @Path("/bookings/best-available")
+    public Response createBestAvailableBooking(@CookieParam("auth") Cookie cookie, @HeaderParam(WAITING_ROOM_TOKEN) String waitingRoomToken,
+                                               BestAvailableRequestDTO requestDTO) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(requestDTO.getDate());
+        if (performance == null || performance.getConcertId() != requestDTO.getConcertId())
+            return Response.status(Response.Status.BAD_REQUEST).build();
+
+        if (!WaitingRooms.instance().isAdmitted(performance.getDate(), waitingRoomToken))
+            return Response.status(Response.Status.TOO_MANY_REQUESTS).build();
+
+        int priceBandIndex = performance.getLayout().priceBandIndexOf(requestDTO.getPriceBand());
+        if (priceBandIndex < 0 || requestDTO.getNumSeats() <= 0
+                || requestDTO.getNumSeats() > performance.getLayout().getNumSeats(priceBandIndex))
+            return Response.status(Response.Status.BAD_REQUEST).build();
+
+        // Seats are chosen and claimed together, so the chosen seats can't be lost before they are booked
+        int[] seatIndexes = BestAvailableAllocator.allocate(performance, priceBandIndex, requestDTO.getNumSeats());
+        if (seatIndexes == null)
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        List<String> seatLabels = new ArrayList<>();
+        for (int seatIndex : seatIndexes) {
+            seatLabels.add(performance.getLayout().labelAt(seatIndex));
         }
+
+        Booking finalBooking;
+        try {
+            finalBooking = BookingWriter.writeClaimed(user,
+                    new BookingRequestDTO(requestDTO.getConcertId(), requestDTO.getDate(), seatLabels), performance, seatIndexes);
+        } catch (OptimisticLockException e) {
+            return Response.status(Response.Status.CONFLICT).build();
+        }
+        if (finalBooking == null)
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        subscriptionChecker(finalBooking.getDate());
+
+        return Response.created(URI.create("/concert-service/bookings/" + finalBooking.getId())).build();
     }
 
     /**
@@ -399,6 +722,8 @@ public class ConcertResource {
         if (user == null)
             return Response.status(Response.Status.UNAUTHORIZED).build();
 
+        awaitJournalledBookings();
+
         EntityManager em = PersistenceManager.instance().createEntityManager();
         try {
             em.getTransaction().begin();
@@ -438,6 +763,8 @@ public class ConcertResource {
         if (user == null)
             return Response.status(Response.Status.UNAUTHORIZED).build();
 
+        awaitJournalledBookings();
+
         EntityManager em = PersistenceManager.instance().createEntityManager();
 
         try {
@@ -459,49 +786,414 @@ public class ConcertResource {
     }
 
     /**
-     * Get seats for a particular concert based on the time and status of seats required
-     * @param dateArg Date of the seats in String format
-     * @param seatStatus Whether seat has a status of booked, unbooked, or Any
+     * Cancels one of the logged in user's bookings. The seats are freed in the database and then released in the
+     * seat availability index, so they can be booked again straight away, and subscribers are checked again.
+     * A 401 error is returned when not authenticated, a 404 error if there is no such booking, and a 403 error
+     * if the booking belongs to another user
+     * @param cookie
+     * @param id Booking ID
      * @return
      */
-    @GET
-    @Path("/seats/{date}")
-    public Response getSeat(@PathParam("date") String dateArg, @QueryParam("status") BookingStatus seatStatus) {
-        GenericEntity<List<SeatDTO>> seats;
-        LocalDateTime date = new LocalDateTimeParam(dateArg).getLocalDateTime();
+    @DELETE
+    @Path("/bookings/{id}")
+    public Response cancelBooking(@CookieParam("auth") Cookie cookie, @PathParam("id") long id) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        awaitJournalledBookings();
+
         EntityManager em = PersistenceManager.instance().createEntityManager();
+        Booking booking;
+        List<String> seatLabels = new ArrayList<>();
+
         try {
-            List<Seat> seatList;
             em.getTransaction().begin();
-            // Get Seats based on its status
-            if (seatStatus != BookingStatus.Any) {
-                boolean isBooked = seatStatus == BookingStatus.Booked;
-                TypedQuery<Seat> seatTypedQuery = em.createQuery("SELECT s FROM Seat s WHERE s.date = :date AND s.isBooked = :isBooked", Seat.class)
-                        .setParameter("date", date)
-                        .setParameter("isBooked", isBooked)
-                        .setLockMode(LockModeType.PESSIMISTIC_READ);
-                seatList = seatTypedQuery.getResultList();
+            // Locking the booking means only one of two concurrent cancellations frees the seats
+            booking = em.find(Booking.class, id, LockModeType.PESSIMISTIC_WRITE);
 
-            } else {
-                TypedQuery<Seat> seatTypedQuery = em.createQuery("SELECT s FROM Seat s WHERE s.date = :date", Seat.class)
-                        .setParameter("date", date)
-                        .setLockMode(LockModeType.PESSIMISTIC_READ);
-                seatList = seatTypedQuery.getResultList();
+            if (booking == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            } else if (!(booking.getUser().equals(user))) {
+                return Response.status(Response.Status.FORBIDDEN).build();
             }
 
-            // Converting Seat to SeatDTO
-            List<SeatDTO> seatDTOList = new ArrayList<>();
-            for (Seat seat : seatList) {
-                SeatDTO temp = SeatMapper.domainToDTO(seat);
-                seatDTOList.add(temp);
+            for (Seat s : booking.getSeats()) {
+                seatLabels.add(s.getLabel());
             }
-            em.getTransaction().commit();
 
-            seats = new GenericEntity<List<SeatDTO>>(seatDTOList) {};
-            return Response.ok(seats).build();
+            BookingWriter.delete(em, booking);
+            em.getTransaction().commit();
         } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
             em.close();
         }
+
+        // The seats are only released once they are free in the database, so nobody can claim them too early
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(booking.getDate());
+        if (performance != null) {
+            int[] seatIndexes = performance.toSeatIndexes(seatLabels);
+            if (seatIndexes != null) {
+                performance.unbook(seatIndexes);
+                BookingEvents.instance().unbooked(performance, seatIndexes);
+            }
+        }
+
+        subscriptionChecker(booking.getDate());
+
+        return Response.noContent().build();
+    }
+
+    /**
+     * Holds seats for a logged in user so no-one else can book them while the user checks out. The hold expires
+     * after a while unless it is confirmed into a booking.
+     * A 401 error is returned when not authenticated, a 400 error for a nonexistent concert or date, and a
+     * 403 error if any of the seats are already taken, and a 429 error if the Waiting-Room-Token hasn't been admitted
+     * @param cookie
+     * @param waitingRoomToken
+     * @param holdRequestDTO The seats to hold
+     * @return The new hold
+     */
+    @POST
+    @Path("/holds")
+    public Response createHold(@CookieParam("auth") Cookie cookie, @HeaderParam(WAITING_ROOM_TOKEN) String waitingRoomToken,
+                               BookingRequestDTO holdRequestDTO) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(holdRequestDTO.getDate());
+        if (performance == null || performance.getConcertId() != holdRequestDTO.getConcertId())
+            return Response.status(Response.Status.BAD_REQUEST).build();
+
+        if (!WaitingRooms.instance().isAdmitted(performance.getDate(), waitingRoomToken))
+            return Response.status(Response.Status.TOO_MANY_REQUESTS).build();
+
+        int[] seatIndexes = performance.toSeatIndexes(holdRequestDTO.getSeatLabels());
+        if (seatIndexes == null || seatIndexes.length == 0)
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        SeatHold hold = SeatHoldRegistry.instance().hold(user.getId(), performance, seatIndexes);
+        if (hold == null)
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        return Response.created(URI.create("/concert-service/holds/" + hold.getId()))
+                .entity(SeatHoldMapper.domainToDTO(hold)).build();
+    }
+
+    /**
+     * Gets one of the logged in user's seat holds, including how long it has left
+     * @param cookie
+     * @param id Hold ID
+     * @return
+     */
+    @GET
+    @Path("/holds/{id}")
+    public Response getHold(@CookieParam("auth") Cookie cookie, @PathParam("id") String id) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        SeatHold hold = SeatHoldRegistry.instance().get(id);
+        if (hold == null)
+            return Response.status(Response.Status.NOT_FOUND).build();
+        else if (hold.getUserId() != user.getId())
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        return Response.ok(SeatHoldMapper.domainToDTO(hold)).build();
+    }
+
+    /**
+     * Releases one of the logged in user's seat holds straight away, rather than waiting for it to expire
+     * @param cookie
+     * @param id Hold ID
+     * @return
+     */
+    @DELETE
+    @Path("/holds/{id}")
+    public Response releaseHold(@CookieParam("auth") Cookie cookie, @PathParam("id") String id) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        SeatHold hold = SeatHoldRegistry.instance().get(id);
+        if (hold == null)
+            return Response.status(Response.Status.NOT_FOUND).build();
+        else if (hold.getUserId() != user.getId())
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        if (!SeatHoldRegistry.instance().release(hold))
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        return Response.noContent().build();
+    }
+
+    /**
+     * Confirms one of the logged in user's seat holds into a booking. A 404 error is returned if the hold has
+     * already expired, and a 409 error if the optimistic booking engine kept clashing with other updates to the
+     * seats (the hold is used up either way)
+     * @param cookie
+     * @param id Hold ID
+     * @return
+     */
+    @POST
+    @Path("/holds/{id}/booking")
+    public Response confirmHold(@CookieParam("auth") Cookie cookie, @PathParam("id") String id) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        SeatHold hold = SeatHoldRegistry.instance().get(id);
+        if (hold == null)
+            return Response.status(Response.Status.NOT_FOUND).build();
+        else if (hold.getUserId() != user.getId())
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        // Taking the hold stops it expiring, so from here on the seats are ours to book
+        if (!SeatHoldRegistry.instance().take(hold))
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        SeatHoldDTO holdDTO = SeatHoldMapper.domainToDTO(hold);
+        BookingRequestDTO bookingDTO = new BookingRequestDTO(holdDTO.getConcertId(), holdDTO.getDate(), holdDTO.getSeatLabels());
+
+        Booking finalBooking;
+        try {
+            finalBooking = BookingWriter.writeClaimed(user, bookingDTO, hold.getPerformance(), hold.getSeatIndexes());
+        } catch (OptimisticLockException e) {
+            return Response.status(Response.Status.CONFLICT).build();
+        }
+        if (finalBooking == null)
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        subscriptionChecker(finalBooking.getDate());
+
+        return Response.created(URI.create("/concert-service/bookings/" + finalBooking.getId())).build();
+    }
+
+    /**
+     * Joins the waiting room of a concert date. The returned token is sent in the Waiting-Room-Token header to get
+     * the date's seats and book them once it has been admitted. While the waiting room is disabled every token is
+     * admitted straight away. A user joining again gets back the token they already hold.
+     * A 401 error is returned when not authenticated, a 400 error for a nonexistent concert or date, and a 503
+     * error if the waiting room is full
+     * @param cookie
+     * @param concertId ID of the concert
+     * @param dateArg Date of the concert in String format
+     * @return The user's place in the queue
+     */
+    @POST
+    @Path("/waiting-room/{concertId}/{date}")
+    public Response joinWaitingRoom(@CookieParam("auth") Cookie cookie, @PathParam("concertId") long concertId,
+                                    @PathParam("date") String dateArg) {
+        User user = authoriseUser(cookie);
+
+        if (user == null)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+
+        WaitingRoom room = WaitingRooms.instance().forPerformance(concertId, new LocalDateTimeParam(dateArg).getLocalDateTime());
+        if (room == null)
+            return Response.status(Response.Status.BAD_REQUEST).build();
+
+        String token = room.join(user.getId());
+        if (token == null)
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+
+        return Response.created(URI.create("/concert-service/waiting-room/" + concertId + "/" + dateArg + "/" + token))
+                .entity(WaitingRoomTicketMapper.domainToDTO(room, token, room.positionOf(token))).build();
+    }
+
+    /**
+     * Gets how far a waiting room token is from the front of the queue, which is 0 once it has been admitted
+     * A 404 error is returned for a nonexistent concert or date, or a token that is unknown or has expired
+     * @param concertId ID of the concert
+     * @param dateArg Date of the concert in String format
+     * @param token Token from joining the waiting room
+     * @return The token's place in the queue
+     */
+    @GET
+    @Path("/waiting-room/{concertId}/{date}/{token}")
+    public Response getWaitingRoomPosition(@PathParam("concertId") long concertId, @PathParam("date") String dateArg,
+                                           @PathParam("token") String token) {
+        WaitingRoom room = WaitingRooms.instance().forPerformance(concertId, new LocalDateTimeParam(dateArg).getLocalDateTime());
+        long position = room == null ? -1 : room.positionOf(token);
+        if (position < 0)
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        return Response.ok(WaitingRoomTicketMapper.domainToDTO(room, token, position)).build();
+    }
+
+    /**
+     * Get seats for a particular concert based on the time and status of seats required
+     * The response's ETag is the version of the concert date's seat availability. A 304 is returned if the
+     * If-None-Match header already has the current version. As the seats can also be fetched as a bitmap from the
+     * same URI, responses send Vary: Accept.
+     * If sinceVersion is given, only the seats booked or unbooked since that version are returned (ignoring the
+     * status). A 410 error is returned if the version is too old to be answered, in which case all the seats
+     * should be fetched again.
+     * A 429 error is returned if the Waiting-Room-Token hasn't been admitted
+     * @param dateArg Date of the seats in String format
+     * @param seatStatus Whether seat has a status of booked, unbooked, or Any
+     * @param sinceVersion Version of the seat availability the client already has
+     * @param waitingRoomToken
+     * @param request The request, for evaluating If-None-Match
+     * @return
+     */
+    @GET
+    @Path("/seats/{date}")
+    public Response getSeat(@PathParam("date") String dateArg, @QueryParam("status") BookingStatus seatStatus,
+                            @QueryParam("sinceVersion") Long sinceVersion, @HeaderParam(WAITING_ROOM_TOKEN) String waitingRoomToken,
+                            @Context Request request) {
+        GenericEntity<List<SeatDTO>> seats;
+        LocalDateTime date = new LocalDateTimeParam(dateArg).getLocalDateTime();
+
+        // Seats are answered from the in-memory index rather than the database. No status means unbooked seats.
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+        if (performance == null) {
+            seats = new GenericEntity<List<SeatDTO>>(new ArrayList<>()) {};
+            return Response.ok(seats).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+
+        if (!WaitingRooms.instance().isAdmitted(date, waitingRoomToken))
+            return Response.status(Response.Status.TOO_MANY_REQUESTS).build();
+
+        // The version is read before the seats, so the seats returned are never older than the ETag
+        EntityTag etag = new EntityTag(Long.toString(performance.getVersion()));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null)
+            return notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+
+        if (sinceVersion != null)
+            return getSeatChanges(performance, sinceVersion);
+
+        BookingStatus status = seatStatus == null ? BookingStatus.Unbooked : seatStatus;
+        List<SeatDTO> seatDTOList = new ArrayList<>();
+        for (int seatIndex : performance.seatIndexes(status)) {
+            seatDTOList.add(SeatMapper.layoutToDTO(performance.getLayout(), seatIndex));
+        }
+
+        seats = new GenericEntity<List<SeatDTO>>(seatDTOList) {};
+        return Response.ok(seats).tag(etag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * Get which seats are booked for a particular concert date as a bitmap, in the binary form described by
+     * {@link SeatAvailabilityMapper}. Chosen over the JSON list of seats by asking for its media type in the
+     * Accept header. Its lower qs means clients that accept anything still get JSON. The ETag is the version of the
+     * seat availability with a "-bin" suffix, so it never matches the JSON form's, and a 304 is returned if
+     * If-None-Match already has it. Like the JSON form, responses send Vary: Accept.
+     * A 404 error is returned if there is no concert on the date, and a 429 error if the Waiting-Room-Token hasn't
+     * been admitted
+     * @param dateArg Date of the seats in String format
+     * @param waitingRoomToken
+     * @param request The request, for evaluating If-None-Match
+     * @return
+     */
+    @GET
+    @Path("/seats/{date}")
+    @Produces(SeatAvailabilityMapper.MEDIA_TYPE + ";qs=0.5")
+    public Response getSeatBitmap(@PathParam("date") String dateArg, @HeaderParam(WAITING_ROOM_TOKEN) String waitingRoomToken,
+                                  @Context Request request) {
+        LocalDateTime date = new LocalDateTimeParam(dateArg).getLocalDateTime();
+
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+        if (performance == null)
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        if (!WaitingRooms.instance().isAdmitted(date, waitingRoomToken))
+            return Response.status(Response.Status.TOO_MANY_REQUESTS).build();
+
+        long version = performance.getVersion();
+        EntityTag etag = new EntityTag(version + BITMAP_ETAG_SUFFIX);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null)
+            return notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+
+        return Response.ok(SeatAvailabilityMapper.performanceToBytes(performance, version)).tag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * A helper function that waits for journalled bookings to be written to the database before bookings are read
+     * from it, so users always see the bookings they have made
+     */
+    private void awaitJournalledBookings() {
+        if (ServiceConfig.isJournalEnabled())
+            BookingJournal.instance().awaitWritten();
+    }
+
+    /**
+     * A helper function that gets the seats which have changed since a version from the performance's change log
+     * @param performance The performance
+     * @param sinceVersion Version of the seat availability the client already has
+     * @return The changed seats, or 410 if the change log can't answer
+     */
+    private Response getSeatChanges(PerformanceSeats performance, long sinceVersion) {
+        SeatChangeLog.Changes changes = performance.changesSince(sinceVersion);
+        if (changes == null)
+            return Response.status(Response.Status.GONE).build();
+
+        return Response.ok(SeatChangesMapper.changesToDTO(performance, sinceVersion, changes))
+                .tag(new EntityTag(Long.toString(changes.getVersion())))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .build();
+    }
+
+    /**
+     * Streams the seats of a particular concert date as server-sent events, see {@link SeatEventStream}. The client
+     * is sent every seat straight away, then the seats booked or unbooked as bookings are made and cancelled.
+     * A 404 error is returned if there is no concert on the date
+     * @param dateArg Date of the concert in String format
+     * @param sink The client's connection
+     * @param sse Used to create the events
+     */
+    @GET
+    @Path("/seats/{date}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamSeats(@PathParam("date") String dateArg, @Context SseEventSink sink, @Context Sse sse) {
+        LocalDateTime date = new LocalDateTimeParam(dateArg).getLocalDateTime();
+
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+        if (performance == null)
+            throw new NotFoundException();
+
+        SeatEventStreams.instance().connect(sink, sse, performance);
+    }
+
+    /**
+     * Get how many seats have been booked for a particular concert date, overall and in each price band
+     * A 404 error is returned if there is no concert on the date
+     * @param dateArg Date of the concert in String format
+     * @return The availability summary
+     */
+    @GET
+    @Path("/seats/{date}/summary")
+    public Response getSeatSummary(@PathParam("date") String dateArg) {
+        LocalDateTime date = new LocalDateTimeParam(dateArg).getLocalDateTime();
+
+        // Read from the performance's counters, so no seats need to be looked at
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+        if (performance == null)
+            return Response.status(Response.Status.NOT_FOUND).build();
+
+        return Response.ok(AvailabilitySummaryMapper.performanceToDTO(performance)).build();
+    }
+
+    /**
+     * Gets how busy the service's background work is, e.g. how many notification tasks are waiting for a thread
+     * @return The service metrics
+     */
+    @GET
+    @Path("/metrics")
+    public Response getMetrics() {
+        return Response.ok(ServiceMetricsMapper.toDTO(NotificationExecutor.instance(),
+                NotificationDispatcher.instance(), SubscriptionRegistry.instance(), BookingEvents.instance(),
+                AuthenticationTokens.instance(), BookingAttempts.instance())).build();
     }
 
 
@@ -510,6 +1202,7 @@ public class ConcertResource {
      * A 401 error is returned when trying to make a subscription while not authenticated.
      * A 400 error is returned when trying to make a subscription for a nonexistent concert.
      * A 400 error is returned when trying to make a subscription for a nonexistent date.
+     * A 400 error is returned when trying to make a subscription for a percentage over 100.
      * @param response
      * @param concertInfoSubscriptionDTO
      * @param cookie
@@ -540,28 +1233,11 @@ public class ConcertResource {
             }
 
             // As the user has meet all the required conditions they can subscribe to the concert
-            synchronized (activeSubscriptions) {
-                activeSubscriptions.computeIfAbsent(concertInfoSubscriptionDTO.getDate(), k -> new ArrayList<>());
-            }
-            activeSubscriptions.get(concertInfoSubscriptionDTO.getDate()).add(new Subscription(concertInfoSubscriptionDTO, response));
+            SubscriptionRegistry.instance().subscribe(concertInfoSubscriptionDTO.getConcertId(),
+                    concertInfoSubscriptionDTO.getDate(), concertInfoSubscriptionDTO.getPercentageBooked(), response);
         } finally {
             em.close();
         }
 
     }
-
-    /**
-     * Inner Subscription class that notifies user(s) when number of seats left for sale reaches a specific
-     * limit
-     */
-    public class Subscription {
-
-        private final ConcertInfoSubscriptionDTO subscriptionInfo;
-        private final AsyncResponse response;
-
-        public Subscription(ConcertInfoSubscriptionDTO subscriptionInfo, AsyncResponse response) {
-            this.subscriptionInfo = subscriptionInfo;
-            this.response = response;
-        }
-    }
 }
@@ -0,0 +1,67 @@
+package se325.assignment01.concert.service.services;
+
+import se325.assignment01.concert.service.util.BoundedTtlCache;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that remembers bookings made with an Idempotency-Key header, so a client retrying a booking
+ * (e.g. after a timeout) gets the original booking back rather than booking again. Keys are scoped to the user
+ * who sent them, and are kept in a {@link BoundedTtlCache} so they are forgotten after a while.
+ * <p>
+ * Each key maps to the attempt that first used it, which completes with the booking's location. Only successful
+ * bookings are remembered; a key whose booking failed can be used again.
+ */
+public class IdempotentBookings {
+
+    private static IdempotentBookings _instance = null;
+
+    private final BoundedTtlCache<String, CompletableFuture<URI>> attempts = new BoundedTtlCache<>(
+            ServiceConfig.IDEMPOTENCY_CACHE_SIZE, ServiceConfig.IDEMPOTENCY_TTL_SECONDS, TimeUnit.SECONDS);
+
+    protected IdempotentBookings() {}
+
+    public static synchronized IdempotentBookings instance() {
+        if (_instance == null) {
+            _instance = new IdempotentBookings();
+        }
+        return _instance;
+    }
+
+    /**
+     * Starts a booking attempt
+     * @param userId The user making the booking
+     * @param idempotencyKey The key sent by the user
+     * @param attempt The attempt, to be passed to {@link #finish} once the booking has been made
+     * @return null if this is the first attempt with the key. Otherwise the earlier attempt, which is done
+     * (with the booking's location) if the booking has been made, or still running if not
+     */
+    public CompletableFuture<URI> start(long userId, String idempotencyKey, CompletableFuture<URI> attempt) {
+        return attempts.putIfAbsent(userId + ":" + idempotencyKey, attempt);
+    }
+
+    /**
+     * Finishes a booking attempt, remembering the booking if one was made
+     * @param userId The user making the booking
+     * @param idempotencyKey The key sent by the user
+     * @param attempt The attempt passed to {@link #start}
+     * @param response The response to the booking request, or null if it failed with an exception
+     */
+    public void finish(long userId, String idempotencyKey, CompletableFuture<URI> attempt, Response response) {
+        if (response != null && response.getStatus() == Response.Status.CREATED.getStatusCode()) {
+            attempt.complete(response.getLocation());
+        } else {
+            // Forget the key first, so once the attempt is done nobody can see it without a location
+            attempts.remove(userId + ":" + idempotencyKey, attempt);
+            attempt.complete(null);
+        }
+    }
+
+    public void clear() {
+        attempts.clear();
+    }
+}
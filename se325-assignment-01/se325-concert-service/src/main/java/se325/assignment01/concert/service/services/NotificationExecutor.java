@@ -0,0 +1,126 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton class that runs notification work (e.g. checking subscriptions after a booking) for the whole service.
+ * Tasks wait in a bounded queue for one of a fixed number of threads, so a rush of bookings can't start an unbounded
+ * number of threads. When the queue is full the task is run on the thread that submitted it instead, which slows that
+ * request down rather than losing the notification, and how often that happens is counted.
+ * <p>
+ * The executor is shut down when the web application is undeployed (see {@link ServiceLifecycle}), giving queued
+ * tasks a moment to finish.
+ */
+public class NotificationExecutor implements Executor {
+
+    private static final Logger _logger = LoggerFactory.getLogger(NotificationExecutor.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static NotificationExecutor _instance = null;
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder ranOnCaller = new LongAdder();
+
+    protected NotificationExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "notification-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        RejectedExecutionHandler runOnCaller = (task, pool) -> {
+            if (pool.isShutdown())
+                return;
+            ranOnCaller.increment();
+            task.run();
+        };
+
+        executor = new ThreadPoolExecutor(ServiceConfig.NOTIFICATION_THREADS, ServiceConfig.NOTIFICATION_THREADS,
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(ServiceConfig.NOTIFICATION_QUEUE_CAPACITY),
+                threadFactory, runOnCaller);
+    }
+
+    public static synchronized NotificationExecutor instance() {
+        if (_instance == null) {
+            _instance = new NotificationExecutor();
+        }
+        return _instance;
+    }
+
+    /**
+     * Shuts down the executor, if it has been started. A later call to {@link #instance()} starts a new one.
+     */
+    public static synchronized void shutdownInstance() {
+        if (_instance != null) {
+            _instance.shutdown();
+            _instance = null;
+        }
+    }
+
+    /**
+     * Queues a task to be run by one of the executor's threads, or runs it straight away if the queue is full
+     * @param task The notification work
+     */
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                _logger.error("Notification task failed", e);
+            }
+        });
+    }
+
+    /**
+     * Stops accepting tasks, and waits a few seconds for the queued ones to finish
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                _logger.warn(executor.getQueue().size() + " notification tasks were not run before shutting down");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Number of tasks waiting for a thread
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return Number of threads currently running a task
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return Number of tasks that have finished
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return Number of tasks run by the submitting thread because the queue was full
+     */
+    public long getRanOnCaller() {
+        return ranOnCaller.sum();
+    }
+}
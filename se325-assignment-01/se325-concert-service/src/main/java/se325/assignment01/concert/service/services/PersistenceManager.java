@@ -1,5 +1,8 @@
 package se325.assignment01.concert.service.services;
 
+import se325.assignment01.concert.service.journal.BookingJournal;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
@@ -36,8 +39,10 @@ public class PersistenceManager {
         return _instance;
     }
 
-    // FOR TESTING ONLY! Will wipe the database.
+    // FOR TESTING ONLY! Will wipe the database, and any bookings journalled for it.
     public void reset() {
+        if (ServiceConfig.isJournalEnabled())
+            BookingJournal.instance().discard();
         entityManagerFactory.close();
         entityManagerFactory = Persistence.createEntityManagerFactory("se325.assignment01.concert");
     }
@@ -0,0 +1,21 @@
+package se325.assignment01.concert.service.services;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Stops the service's background threads when the web application is undeployed, so a redeploy doesn't leave the
+ * old deployment's threads running. Registered in web.xml.
+ */
+public class ServiceLifecycle implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        BookingSequencer.stopAll();
+        NotificationExecutor.shutdownInstance();
+    }
+}
@@ -0,0 +1,91 @@
+package se325.assignment01.concert.service.subscription;
+
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.services.NotificationExecutor;
+import se325.assignment01.concert.service.util.CoalescingTask;
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton class that tells a performance's subscribers and seat streams about changes to its bookings. A change
+ * only marks the performance as changed. The performance is then looked at once on the {@link NotificationExecutor},
+ * at most once per interval (see {@link ServiceConfig#NOTIFICATION_INTERVAL_MILLIS}), so a burst of bookings for a
+ * performance is dealt with in a few passes rather than one per booking.
+ * <p>
+ * How many changes have been reported, and how many times performances have been looked at, are counted.
+ */
+public class NotificationDispatcher {
+
+    private static NotificationDispatcher _instance = null;
+
+    private final Map<LocalDateTime, CoalescingTask> performances = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer = new HashedWheelTimer("notification-dispatch", 5, TimeUnit.MILLISECONDS, 512);
+
+    private final LongAdder triggers = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder notified = new LongAdder();
+
+    protected NotificationDispatcher() {
+    }
+
+    public static synchronized NotificationDispatcher instance() {
+        if (_instance == null) {
+            _instance = new NotificationDispatcher();
+        }
+        return _instance;
+    }
+
+    /**
+     * Notes that a performance's bookings have changed, e.g. after a booking is committed
+     * @param date Date of the performance
+     */
+    public void changed(LocalDateTime date) {
+        triggers.increment();
+        performances.computeIfAbsent(date, d -> new CoalescingTask(() -> evaluate(d), timer,
+                NotificationExecutor.instance(), ServiceConfig.NOTIFICATION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS))
+                .request();
+    }
+
+    /**
+     * @return Number of changes reported
+     */
+    public long getTriggers() {
+        return triggers.sum();
+    }
+
+    /**
+     * @return Number of times a performance has been looked at
+     */
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * @return Number of subscribers notified
+     */
+    public long getNotified() {
+        return notified.sum();
+    }
+
+    public void clear() {
+        performances.clear();
+    }
+
+    private void evaluate(LocalDateTime date) {
+        evaluations.increment();
+
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+        if (performance == null)
+            return;
+
+        notified.add(SubscriptionRegistry.instance().notifySubscribers(performance));
+        SeatEventStreams.instance().changed(date);
+    }
+}
@@ -0,0 +1,154 @@
+package se325.assignment01.concert.service.subscription;
+
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+
+import javax.ws.rs.container.AsyncResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The subscribers waiting to hear about a single performance (a concert on a particular date). Subscribers are kept
+ * in one bucket per percentage booked (0 to 100), each bucket a lock-free queue, so adding a subscriber never blocks
+ * and a subscriber that goes away can be taken out of its bucket straight away.
+ * <p>
+ * A low watermark records the lowest bucket that may hold subscribers, as every bucket below it has been drained.
+ * When the performance fills up to a percentage only the buckets from the watermark to that percentage are looked
+ * at, so a booking that takes the performance from p1% to p2% touches buckets p1 to p2 rather than every subscriber.
+ * <p>
+ * A subscriber leaves once, whichever of being notified, timing out or disconnecting happens first.
+ */
+public class PerformanceSubscriptions {
+
+    public static final int NUM_BUCKETS = 101;
+
+    // Low 8 bits hold the watermark, the rest a stamp bumped by every add, so draining can tell a subscriber
+    // was added to a bucket it had already looked at even when the watermark itself didn't change
+    private static final int WATERMARK_BITS = 8;
+    private static final long WATERMARK_MASK = (1L << WATERMARK_BITS) - 1;
+
+    private final Queue<Subscriber>[] buckets;
+    private final AtomicLong watermark = new AtomicLong(NUM_BUCKETS);
+    private final AtomicInteger numSubscribers = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    public PerformanceSubscriptions() {
+        buckets = new Queue[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Adds a subscriber, to be notified once the performance is at least the given percentage booked
+     * @param percentageBooked The subscriber's threshold, from 0 to 100
+     * @param response The subscriber's suspended response
+     * @return The subscriber, which can be removed if it goes away before being notified
+     */
+    public Subscriber add(int percentageBooked, AsyncResponse response) {
+        Subscriber subscriber = new Subscriber(this, percentageBooked, response);
+        numSubscribers.incrementAndGet();
+        buckets[percentageBooked].offer(subscriber);
+
+        long current;
+        do {
+            current = watermark.get();
+        } while (!watermark.compareAndSet(current, stamped(current, Math.min(low(current), percentageBooked))));
+        return subscriber;
+    }
+
+    /**
+     * Removes the subscribers whose threshold has been reached
+     * @param percentageBooked How full the performance now is
+     * @return The subscribers to notify, each of which is only ever returned once
+     */
+    public List<Subscriber> drain(int percentageBooked) {
+        List<Subscriber> reached = new ArrayList<>();
+        int last = Math.min(percentageBooked, NUM_BUCKETS - 1);
+
+        while (true) {
+            long current = watermark.get();
+            for (int bucket = low(current); bucket <= last; bucket++) {
+                Subscriber subscriber;
+                while ((subscriber = buckets[bucket].poll()) != null) {
+                    if (subscriber.leave())
+                        reached.add(subscriber);
+                }
+            }
+
+            // Only raise the watermark if nothing was added while draining, otherwise go round again
+            if (low(current) > last || watermark.compareAndSet(current, (current & ~WATERMARK_MASK) | (last + 1)))
+                return reached;
+        }
+    }
+
+    /**
+     * @return Number of subscribers that haven't yet been notified, timed out or disconnected
+     */
+    public int getNumSubscribers() {
+        return numSubscribers.get();
+    }
+
+    private static int low(long watermark) {
+        return (int) (watermark & WATERMARK_MASK);
+    }
+
+    private static long stamped(long current, int low) {
+        return ((current >>> WATERMARK_BITS) + 1) << WATERMARK_BITS | low;
+    }
+
+    /**
+     * A user waiting to be notified about the performance
+     */
+    public static class Subscriber {
+
+        private final PerformanceSubscriptions performance;
+        private final int percentageBooked;
+        private final AsyncResponse response;
+        private final AtomicBoolean left = new AtomicBoolean(false);
+        private volatile HashedWheelTimer.Timeout expiry;
+
+        private Subscriber(PerformanceSubscriptions performance, int percentageBooked, AsyncResponse response) {
+            this.performance = performance;
+            this.percentageBooked = percentageBooked;
+            this.response = response;
+        }
+
+        public AsyncResponse getResponse() {
+            return response;
+        }
+
+        public void setExpiry(HashedWheelTimer.Timeout expiry) {
+            this.expiry = expiry;
+            if (left.get())
+                expiry.cancel();
+        }
+
+        /**
+         * Takes the subscriber out of its bucket without notifying it, e.g. when it has timed out or disconnected
+         * @return false if the subscriber has already left
+         */
+        public boolean remove() {
+            if (!leave())
+                return false;
+            performance.buckets[percentageBooked].remove(this);
+            return true;
+        }
+
+        // Only the first caller gets true, and is the one to act on the subscriber
+        private boolean leave() {
+            if (!left.compareAndSet(false, true))
+                return false;
+
+            performance.numSubscribers.decrementAndGet();
+            HashedWheelTimer.Timeout timeout = expiry;
+            if (timeout != null)
+                timeout.cancel();
+            return true;
+        }
+    }
+}
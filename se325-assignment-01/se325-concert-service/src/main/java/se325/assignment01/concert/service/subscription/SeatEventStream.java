@@ -0,0 +1,156 @@
+package se325.assignment01.concert.service.subscription;
+
+import se325.assignment01.concert.common.dto.AvailabilitySummaryDTO;
+import se325.assignment01.concert.common.dto.SeatAvailabilityDeltaDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.availability.SeatChangeLog;
+import se325.assignment01.concert.service.mapper.AvailabilitySummaryMapper;
+import se325.assignment01.concert.service.mapper.SeatChangesMapper;
+import se325.assignment01.concert.service.services.NotificationExecutor;
+import se325.assignment01.concert.service.util.CoalescingTask;
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The clients streaming the seat availability of a single performance as server-sent events. Each time the
+ * performance's bookings change the clients are sent:
+ * <ul>
+ *     <li>a "seats" event, a {@link SeatAvailabilityDeltaDTO} of the seats booked or unbooked since the last event</li>
+ *     <li>a "summary" event, an {@link AvailabilitySummaryDTO} of how many seats are left</li>
+ * </ul>
+ * Changes are coalesced, so clients get at most a set number of events a second however busy the performance is.
+ * The event ids are availability versions. A client is sent every seat when it connects, as a "seats" event with a
+ * sinceVersion of 0.
+ * <p>
+ * Connections are held by an {@link SseBroadcaster} without a thread each, so idle clients only cost their socket.
+ * The broadcaster sends each event on a thread of its own, so each event is only handed to it once the one before
+ * has been sent. Nothing waits for that, so a slow client holds up this performance's events but no threads.
+ */
+public class SeatEventStream {
+
+    private static final String SEATS_EVENT = "seats";
+    private static final String SUMMARY_EVENT = "summary";
+
+    private final LocalDateTime date;
+    private final Sse sse;
+    private final SseBroadcaster broadcaster;
+    private final CoalescingTask flush;
+    private final AtomicInteger numClients = new AtomicInteger();
+
+    // Guarded by this, so a connecting client's first event and the events broadcast to it never miss a change
+    private long sentVersion = -1;
+
+    // Guarded by this. Completes once the last event queued has been sent
+    private CompletionStage<?> lastStep = CompletableFuture.completedFuture(null);
+
+    SeatEventStream(LocalDateTime date, Sse sse, HashedWheelTimer timer, int maxEventsPerSecond) {
+        this.date = date;
+        this.sse = sse;
+        this.broadcaster = sse.newBroadcaster();
+        this.flush = new CoalescingTask(this::flush, timer, NotificationExecutor.instance(),
+                TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxEventsPerSecond), TimeUnit.NANOSECONDS);
+
+        broadcaster.onClose(sink -> numClients.decrementAndGet());
+        broadcaster.onError((sink, e) -> sink.close());
+    }
+
+    /**
+     * Sends a client every seat of the performance, then streams it the changes from then on
+     * @param sink The client's connection
+     * @param performance The performance
+     */
+    synchronized void connect(SseEventSink sink, PerformanceSeats performance) {
+        long version = performance.getVersion();
+        if (sentVersion < 0)
+            sentVersion = version;
+
+        sink.send(seatsEvent(SeatChangesMapper.performanceToDTO(performance, version)));
+        sink.send(summaryEvent(performance, version));
+        numClients.incrementAndGet();
+
+        // Only once the events queued before it have gone, as they may be older than the seats it was just sent
+        then(() -> {
+            broadcaster.register(sink);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Notes that the performance's bookings have changed. The clients are sent the change straight away if they
+     * haven't had an event recently, otherwise once the interval between events is up.
+     */
+    void changed() {
+        if (numClients.get() > 0)
+            flush.request();
+    }
+
+    /**
+     * @return Number of clients streaming the performance, which may include some that have gone but not been noticed
+     */
+    public int getNumClients() {
+        return numClients.get();
+    }
+
+    void close() {
+        broadcaster.close();
+    }
+
+    private synchronized void flush() {
+        PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+        if (performance == null)
+            return;
+
+        SeatChangeLog.Changes changes = performance.changesSince(sentVersion);
+        long version = changes == null ? performance.getVersion() : changes.getVersion();
+        if (changes != null && changes.getSeatIndexes().length == 0)
+            return;
+
+        // Too far behind for the change log, so every seat is sent again
+        SeatAvailabilityDeltaDTO seats = changes == null ? SeatChangesMapper.performanceToDTO(performance, version)
+                : SeatChangesMapper.changesToDTO(performance, sentVersion, changes);
+        sentVersion = version;
+
+        broadcast(seatsEvent(seats));
+        broadcast(summaryEvent(performance, version));
+    }
+
+    private void broadcast(OutboundSseEvent event) {
+        then(() -> broadcaster.broadcast(event));
+    }
+
+    // Starts a step once the ones queued before it are done, without waiting for them. Must hold this
+    private void then(Supplier<CompletionStage<?>> step) {
+        // Clients that failed to receive an event are closed by the broadcaster's error handler
+        lastStep = lastStep.thenCompose(done -> step.get()).exceptionally(e -> null);
+    }
+
+    private OutboundSseEvent seatsEvent(SeatAvailabilityDeltaDTO seats) {
+        return sse.newEventBuilder()
+                .name(SEATS_EVENT)
+                .id(Long.toString(seats.getVersion()))
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(SeatAvailabilityDeltaDTO.class, seats)
+                .build();
+    }
+
+    private OutboundSseEvent summaryEvent(PerformanceSeats performance, long version) {
+        return sse.newEventBuilder()
+                .name(SUMMARY_EVENT)
+                .id(Long.toString(version))
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(AvailabilitySummaryDTO.class, AvailabilitySummaryMapper.performanceToDTO(performance))
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package se325.assignment01.concert.service.subscription;
+
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class holding a {@link SeatEventStream} for each performance that has had a client stream its seats.
+ * The streams share one {@link HashedWheelTimer} to wait out the interval between events.
+ */
+public class SeatEventStreams {
+
+    private static SeatEventStreams _instance = null;
+
+    private final Map<LocalDateTime, SeatEventStream> streams = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer = new HashedWheelTimer("seat-events", 10, TimeUnit.MILLISECONDS, 512);
+
+    protected SeatEventStreams() {
+    }
+
+    public static synchronized SeatEventStreams instance() {
+        if (_instance == null) {
+            _instance = new SeatEventStreams();
+        }
+        return _instance;
+    }
+
+    /**
+     * Starts streaming a performance's seats to a client
+     * @param sink The client's connection
+     * @param sse Used to create the performance's stream, if it doesn't have one yet
+     * @param performance The performance
+     */
+    public void connect(SseEventSink sink, Sse sse, PerformanceSeats performance) {
+        streams.computeIfAbsent(performance.getDate(),
+                date -> new SeatEventStream(date, sse, timer, ServiceConfig.SEAT_EVENTS_PER_SECOND))
+                .connect(sink, performance);
+    }
+
+    /**
+     * Notes that a performance's bookings have changed, so its clients are sent the change
+     * @param date Date of the performance
+     */
+    public void changed(LocalDateTime date) {
+        SeatEventStream stream = streams.get(date);
+        if (stream != null)
+            stream.changed();
+    }
+
+    /**
+     * @return Number of clients streaming any performance's seats
+     */
+    public int getNumClients() {
+        return streams.values().stream().mapToInt(SeatEventStream::getNumClients).sum();
+    }
+
+    /**
+     * Disconnects every client, e.g. when the performances are reloaded
+     */
+    public void clear() {
+        streams.values().forEach(SeatEventStream::close);
+        streams.clear();
+    }
+}
@@ -0,0 +1,158 @@
+package se325.assignment01.concert.service.subscription;
+
+import se325.assignment01.concert.common.dto.ConcertInfoNotificationDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.services.NotificationExecutor;
+import se325.assignment01.concert.service.util.HashedWheelTimer;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class holding the users subscribed to hear when a performance reaches a percentage booked, with a
+ * {@link PerformanceSubscriptions} for each performance that has subscribers.
+ * <p>
+ * Subscribers don't wait forever. Each has a deadline (see {@link ServiceConfig#SUBSCRIPTION_TIMEOUT_SECONDS}),
+ * after which it is sent a 503 so the client can subscribe again, and the deadlines are all kept on a single
+ * {@link HashedWheelTimer}. A subscriber whose client disconnects is removed straight away.
+ */
+public class SubscriptionRegistry {
+
+    private static SubscriptionRegistry _instance = null;
+
+    private final Map<Key, PerformanceSubscriptions> performances = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer = new HashedWheelTimer("subscription-expiry", 100, TimeUnit.MILLISECONDS, 1024);
+
+    protected SubscriptionRegistry() {
+    }
+
+    public static synchronized SubscriptionRegistry instance() {
+        if (_instance == null) {
+            _instance = new SubscriptionRegistry();
+        }
+        return _instance;
+    }
+
+    /**
+     * Subscribes a user to a performance. Subscribers are notified on a later booking, once the performance is at
+     * least the given percentage booked. A percentage over 100 can never be reached, so is sent a 400 straight away.
+     * @param concertId The performance's concert
+     * @param date The performance's date
+     * @param percentageBooked The subscriber's threshold
+     * @param response The subscriber's suspended response
+     */
+    public void subscribe(long concertId, LocalDateTime date, int percentageBooked, AsyncResponse response) {
+        if (percentageBooked >= PerformanceSubscriptions.NUM_BUCKETS) {
+            response.resume(Response.status(Response.Status.BAD_REQUEST).build());
+            return;
+        }
+
+        // Registered first, as the subscriber could be notified (completing the response) as soon as it is added.
+        // Completion also covers the connection failing while the response is being written
+        DisconnectCallback callback = new DisconnectCallback();
+        response.register(callback);
+
+        PerformanceSubscriptions.Subscriber subscriber = performances
+                .computeIfAbsent(new Key(concertId, date), k -> new PerformanceSubscriptions())
+                .add(Math.max(0, percentageBooked), response);
+        callback.subscriber = subscriber;
+
+        // The response is resumed off the timer's thread, which only decides who has timed out
+        subscriber.setExpiry(timer.schedule(() -> {
+            if (subscriber.remove())
+                NotificationExecutor.instance().execute(() ->
+                        response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build()));
+        }, ServiceConfig.SUBSCRIPTION_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Notifies the performance's subscribers whose threshold it has reached, with the number of seats left
+     * @param performance The performance, after a change in its bookings
+     * @return Number of subscribers notified
+     */
+    public int notifySubscribers(PerformanceSeats performance) {
+        PerformanceSubscriptions subscriptions = performances.get(new Key(performance.getConcertId(), performance.getDate()));
+        if (subscriptions == null)
+            return 0;
+
+        // Read once, so every subscriber notified together is told the same number of seats
+        int percentageBooked = performance.getPercentageBooked();
+        int numRemaining = performance.getNumRemaining();
+
+        List<PerformanceSubscriptions.Subscriber> reached = subscriptions.drain(percentageBooked);
+        for (PerformanceSubscriptions.Subscriber subscriber : reached) {
+            subscriber.getResponse().resume(new ConcertInfoNotificationDTO(numRemaining));
+        }
+        return reached.size();
+    }
+
+    /**
+     * @return Number of subscribers waiting to be notified, across all performances
+     */
+    public int getNumSubscribers() {
+        return performances.values().stream().mapToInt(PerformanceSubscriptions::getNumSubscribers).sum();
+    }
+
+    public void clear() {
+        performances.clear();
+    }
+
+    /**
+     * Removes a subscriber as soon as its client goes away
+     */
+    private static class DisconnectCallback implements ConnectionCallback, CompletionCallback {
+
+        private volatile PerformanceSubscriptions.Subscriber subscriber;
+
+        @Override
+        public void onDisconnect(AsyncResponse disconnected) {
+            remove();
+        }
+
+        @Override
+        public void onComplete(Throwable throwable) {
+            remove();
+        }
+
+        private void remove() {
+            PerformanceSubscriptions.Subscriber added = subscriber;
+            if (added != null)
+                added.remove();
+        }
+    }
+
+    private static class Key {
+
+        private final long concertId;
+        private final LocalDateTime date;
+
+        private Key(long concertId, LocalDateTime date) {
+            this.concertId = concertId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return concertId == key.concertId && date.equals(key.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(concertId, date);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A concurrent map whose entries expire a fixed time after they are written, and which holds at most a given
+ * number of entries. Expired entries are dropped when they are next read. When the map grows past its maximum
+ * size a small sample of entries is examined, and the expired ones (or failing that the one closest to expiring)
+ * are evicted, so making room never needs a lock or a scan of the whole map. Entries added with
+ * {@link #putIfRoom(Object, Supplier)} never push out live entries.
+ * <p>
+ * Hits, misses and evictions are counted, for reporting how well the cache is working.
+ */
+public class BoundedTtlCache<K, V> {
+
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize Most entries to hold
+     * @param ttl How long entries last after they are written
+     * @param unit Unit of the ttl
+     */
+    public BoundedTtlCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * @return The value for the key, or null if there is none or it has expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || expire(key, entry, System.nanoTime())) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        trim();
+    }
+
+    /**
+     * Adds a value if there is no live value for the key
+     * @return The live value already held for the key, or null if the given value was added
+     */
+    public V putIfAbsent(K key, V value) {
+        long now = System.nanoTime();
+        Entry<V> created = new Entry<>(value, now + ttlNanos);
+
+        while (true) {
+            Entry<V> existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                trim();
+                return null;
+            }
+            if (!existing.isExpired(now))
+                return existing.value;
+            if (entries.replace(key, existing, created)) {
+                evictions.increment();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Adds a value only if there is room for it without evicting a live entry. Concurrent callers may take the map
+     * a few entries past its maximum size, as each checks for room before adding.
+     * @param value Makes the value, only called once there is room
+     * @return true if the value was added
+     */
+    public boolean putIfRoom(K key, Supplier<? extends V> value) {
+        if (entries.size() >= maxSize) {
+            sample(System.nanoTime());
+            if (entries.size() >= maxSize)
+                return false;
+        }
+
+        entries.put(key, new Entry<>(value.get(), System.nanoTime() + ttlNanos));
+        return true;
+    }
+
+    /**
+     * Replaces the value for a key, only if it is currently the given value. The entry's time to live restarts.
+     * @return true if the value was replaced
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        Entry<V> existing = entries.get(key);
+        return existing != null && Objects.equals(existing.value, oldValue)
+                && entries.replace(key, existing, new Entry<>(newValue, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Removes the value for a key, only if it is currently the given value
+     * @return true if the value was removed
+     */
+    public boolean remove(K key, V value) {
+        Entry<V> existing = entries.get(key);
+        return existing != null && Objects.equals(existing.value, value) && entries.remove(key, existing);
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return Number of entries held, which may include some that have expired but not yet been dropped
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Removes an entry if it has expired, returning whether it had
+    private boolean expire(K key, Entry<V> entry, long now) {
+        if (!entry.isExpired(now))
+            return false;
+        if (entries.remove(key, entry))
+            evictions.increment();
+        return true;
+    }
+
+    private void trim() {
+        while (entries.size() > maxSize) {
+            Map.Entry<K, Entry<V>> oldest = sample(System.nanoTime());
+            if (oldest != null && entries.remove(oldest.getKey(), oldest.getValue()))
+                evictions.increment();
+        }
+    }
+
+    // Examines a few entries and removes the expired ones. Returns the live entry closest to expiring if none had
+    // expired, otherwise null
+    private Map.Entry<K, Entry<V>> sample(long now) {
+        Map.Entry<K, Entry<V>> oldest = null;
+        boolean expiredAny = false;
+
+        Iterator<Map.Entry<K, Entry<V>>> sample = entries.entrySet().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE && sample.hasNext(); i++) {
+            Map.Entry<K, Entry<V>> candidate = sample.next();
+            if (expire(candidate.getKey(), candidate.getValue(), now))
+                expiredAny = true;
+            else if (oldest == null || candidate.getValue().expiresAt - oldest.getValue().expiresAt < 0)
+                oldest = candidate;
+        }
+        return expiredAny ? null : oldest;
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
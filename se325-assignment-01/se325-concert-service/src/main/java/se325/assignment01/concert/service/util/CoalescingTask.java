@@ -0,0 +1,60 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A task that is asked to run many times, but runs at most once per interval. Requests made while a run is waiting
+ * to start are folded into that run. A request made after the interval has passed runs the task straight away,
+ * otherwise the run is put off on a {@link HashedWheelTimer} until the interval is up. Either way the task itself runs
+ * on the given executor, as timer tasks should be quick.
+ * <p>
+ * A run clears the request before the task starts, so anything requested while it is running is seen by the next run.
+ */
+public class CoalescingTask {
+
+    private final Runnable task;
+    private final HashedWheelTimer timer;
+    private final Executor executor;
+    private final long minIntervalNanos;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile long lastRunNanos;
+
+    /**
+     * @param task The task to run
+     * @param timer Timer to wait out the interval on
+     * @param executor Executor to run the task on
+     * @param minInterval Shortest time between the start of one run and the next. 0 only folds together requests
+     *                    made while a run is waiting for the executor
+     * @param unit Unit of minInterval
+     */
+    public CoalescingTask(Runnable task, HashedWheelTimer timer, Executor executor, long minInterval, TimeUnit unit) {
+        this.task = task;
+        this.timer = timer;
+        this.executor = executor;
+        this.minIntervalNanos = unit.toNanos(minInterval);
+        this.lastRunNanos = System.nanoTime() - minIntervalNanos;
+    }
+
+    /**
+     * Asks for the task to be run, if a run isn't already waiting to start
+     */
+    public void request() {
+        if (!scheduled.compareAndSet(false, true))
+            return;
+
+        long delay = lastRunNanos + minIntervalNanos - System.nanoTime();
+        if (delay <= 0)
+            executor.execute(this::run);
+        else
+            timer.schedule(() -> executor.execute(this::run), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void run() {
+        lastRunNanos = System.nanoTime();
+        scheduled.set(false);
+        task.run();
+    }
+}
@@ -2,25 +2,40 @@ package se325.assignment01.concert.service.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.admission.WaitingRooms;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.availability.SeatHoldRegistry;
 import se325.assignment01.concert.service.domain.Concert;
-import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.journal.BookingJournal;
+import se325.assignment01.concert.service.services.AuthenticationTokens;
+import se325.assignment01.concert.service.services.BookingAttempts;
+import se325.assignment01.concert.service.services.BookingSequencer;
 import se325.assignment01.concert.service.services.ConcertApplication;
+import se325.assignment01.concert.service.services.IdempotentBookings;
 import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.subscription.NotificationDispatcher;
+import se325.assignment01.concert.service.subscription.SeatEventStreams;
+import se325.assignment01.concert.service.subscription.SubscriptionRegistry;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 public class ConcertUtils {
 
     private static Logger LOGGER = LoggerFactory.getLogger(ConcertUtils.class);
 
+    // Should match hibernate.jdbc.batch_size in persistence.xml
+    private static final int SEAT_BATCH_SIZE = 50;
+
     /**
      * This method will clear all seat and booking data from the database. Then, it will create all Seat objects for
-     * all concerts and dates.
+     * all concerts and dates, and load them into the {@link SeatAvailabilityIndex}. With lazy seat storage (see
+     * {@link ServiceConfig#SEAT_STORAGE}) no seats are created, as they are only written once booked.
      */
     public static void initConcerts() {
         LOGGER.debug("initConcerts(): Creating the Application");
@@ -34,32 +49,54 @@ public class ConcertUtils {
             List<Concert> concerts = query.getResultList();
 
             // Get all dates for all concerts
-            Set<LocalDateTime> allDates = new HashSet<>();
+            Map<LocalDateTime, Long> allDates = new HashMap<>();
             for (Concert c : concerts) {
-                Set<LocalDateTime> dates = c.getDates();
-                allDates.addAll(dates);
+                for (LocalDateTime date : c.getDates()) {
+                    allDates.put(date, c.getID());
+                }
             }
             em.getTransaction().commit();
 
             LOGGER.debug("initConcerts(): There are " + allDates.size() + " concert dates");
 
-            // For each concert date, create the seats for that date and persist them.
-            int seatCount = 0;
-            for (LocalDateTime date : allDates) {
+            // For each concert date, create the seats for that date and persist them (unless seats are lazy).
+            int[] seatCount = {0};
+            Map<LocalDateTime, Long> seatedDates = ServiceConfig.isLazySeatStorage() ? Collections.emptyMap() : allDates;
+            for (Map.Entry<LocalDateTime, Long> date : seatedDates.entrySet()) {
+                VenueLayout layout = VenueLayouts.instance().forConcert(date.getValue());
 
                 em.getTransaction().begin();
-                Set<Seat> seatsForDate = TheatreLayout.createSeatsFor(date);
-                for (Seat s : seatsForDate) {
-                    em.persist(s);
-                    seatCount++;
-                }
-                em.getTransaction().commit();
+                layout.createSeatsFor(date.getKey(), seat -> {
+                    em.persist(seat);
 
-                // Ensures we aren't braking the EM with thousands of seat entities.
+                    // Ensures we aren't braking the EM with thousands of seat entities. Large venues have tens
+                    // of thousands of seats per date, so this is done in JDBC-batch sized chunks.
+                    if (++seatCount[0] % SEAT_BATCH_SIZE == 0) {
+                        em.flush();
+                        em.clear();
+                    }
+                });
+                em.getTransaction().commit();
                 em.clear();
             }
 
-            LOGGER.debug("initConcerts(): Created " + seatCount + " seats!");
+            LOGGER.debug("initConcerts(): Created " + seatCount[0] + " seats!");
+
+            // Seat queries are answered from memory, so the index has to be rebuilt whenever the seats are.
+            // Any holds were against the old index so are dropped with it, as are remembered bookings.
+            BookingSequencer.stopAll();
+            SeatHoldRegistry.instance().clear();
+            IdempotentBookings.instance().clear();
+            AuthenticationTokens.instance().clear();
+            BookingAttempts.instance().clear();
+            WaitingRooms.instance().clear();
+            NotificationDispatcher.instance().clear();
+            SubscriptionRegistry.instance().clear();
+            SeatEventStreams.instance().clear();
+            // Bookings journalled but not yet written to the database when the service stopped are written first
+            if (ServiceConfig.isJournalEnabled())
+                BookingJournal.instance().replay();
+            SeatAvailabilityIndex.instance().load(em);
         } finally {
             em.close();
         }
@@ -0,0 +1,181 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hashed timing wheel, used to run large numbers of short timeouts (e.g. seat hold expiry) from a single thread.
+ * Timeouts are hashed into a ring of buckets by their deadline. Every tick the worker thread moves to the next
+ * bucket and runs the timeouts that are due, so adding or cancelling a timeout is O(1) no matter how many are pending.
+ * Timeouts are accurate to within one tick.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger _logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    // Upper bound on timeouts moved into the wheel each tick, so a burst of new timeouts can't stall expiry
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final String name;
+    private final long tickNanos;
+    private final LinkedList<Timeout>[] wheel;
+    private final int mask;
+
+    // Timeouts are added by request threads, and only moved into the wheel by the worker thread
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile boolean stopped = false;
+    private volatile long startTime;
+    private long tick = 0;
+
+    /**
+     * @param name Name of the worker thread
+     * @param tickDuration How often the wheel moves to its next bucket
+     * @param unit Unit of tickDuration
+     * @param wheelSize Number of buckets in the wheel. Rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+
+        this.name = name;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new LinkedList[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new LinkedList<>();
+        }
+    }
+
+    /**
+     * Schedules a task to run once after the given delay. The task is run on the timer's thread, so should be quick.
+     * @param task The task to run
+     * @param delay How long to wait before running it
+     * @param unit Unit of delay
+     * @return A handle that can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        start();
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the worker thread. Timeouts that have not yet run are dropped.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    private void start() {
+        if (started.get() || !started.compareAndSet(false, true))
+            return;
+
+        startTime = System.nanoTime();
+        Thread worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void run() {
+        while (!stopped) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            transferPending();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null)
+                return;
+            if (timeout.isCancelled())
+                continue;
+
+            // Anything already overdue goes into the current bucket
+            long dueTick = Math.max((timeout.deadline - startTime) / tickNanos, tick);
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(LinkedList<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Handle to a task scheduled on the timer
+     */
+    public static class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        // Only accessed by the worker thread
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task
+         * @return false if the task has already run (or been cancelled)
+         */
+        public boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(WAITING, EXPIRED))
+                return;
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                _logger.warn("Timeout task threw an exception", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring buffer for many producer threads and a single consumer thread. Producers claim a slot by
+ * advancing the tail with compare-and-set, so offering never blocks, and fails straight away when the buffer is
+ * full instead of queueing without limit.
+ *
+ * @param <T> Type of the items in the buffer
+ */
+public class RingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only written by the consumer
+    private volatile long head = 0;
+
+    /**
+     * @param capacity Maximum number of items in the buffer. Rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an item to the buffer
+     * @param item The item to add
+     * @return false if the buffer is full
+     */
+    public boolean offer(T item) {
+        long slot;
+        do {
+            slot = tail.get();
+            if (slot - head >= slots.length())
+                return false;
+        } while (!tail.compareAndSet(slot, slot + 1));
+
+        slots.set((int) (slot & mask), item);
+        return true;
+    }
+
+    /**
+     * Moves items from the buffer into a list, in the order they were offered. Must only be called by the consumer.
+     * @param items The list to add items to
+     * @param maxItems Maximum number of items to move
+     * @return The number of items moved
+     */
+    public int drainTo(List<T> items, int maxItems) {
+        int count = 0;
+        while (count < maxItems) {
+            int index = (int) (head & mask);
+            T item = slots.get(index);
+
+            // Either empty, or a producer has claimed the slot but not written it yet
+            if (item == null)
+                break;
+
+            slots.set(index, null);
+            head++;
+            items.add(item);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Approximate number of items waiting in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
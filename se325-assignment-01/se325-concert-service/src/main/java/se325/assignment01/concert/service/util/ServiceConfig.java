@@ -0,0 +1,255 @@
+package se325.assignment01.concert.service.util;
+
+/**
+ * Tunable settings for the concert service. Each setting can be overridden with a JVM system property of the same
+ * name, e.g. -Dconcert.holds.ttlSeconds=60 (or a property in the jetty-maven-plugin's systemProperties).
+ */
+public class ServiceConfig {
+
+    /**
+     * Classpath resource holding the venue layouts, see {@link VenueLayouts}.
+     */
+    public static final String VENUES_RESOURCE = System.getProperty("concert.venues.resource", "venues.json");
+
+    /**
+     * How long a seat hold lasts before its seats are released, in seconds.
+     */
+    public static final long HOLD_TTL_SECONDS = Long.getLong("concert.holds.ttlSeconds", 300);
+
+    /**
+     * How bookings are processed. "direct" books on the request thread. "bulk" also books on the request thread,
+     * but marks the seats booked with a single conditional UPDATE which only succeeds if none of them are already
+     * booked. "sequencer" hands each booking to a single writer thread per performance, which commits bookings
+     * in batches. "optimistic" books on the request thread without locking, and relies on the seats' versions to
+     * catch a concurrent booking when committing.
+     */
+    public static final String BOOKING_ENGINE = System.getProperty("concert.booking.engine", "direct");
+
+    /**
+     * Number of bookings that can be waiting for a performance's sequencer before new ones are turned away.
+     */
+    public static final int SEQUENCER_CAPACITY = Integer.getInteger("concert.sequencer.capacity", 1024);
+
+    /**
+     * Most bookings a sequencer commits in one transaction.
+     */
+    public static final int SEQUENCER_BATCH_SIZE = Integer.getInteger("concert.sequencer.batchSize", 64);
+
+    /**
+     * How long a request waits for the sequencer to take its booking, in milliseconds. A booking still queued by then
+     * is cancelled, one the sequencer has taken is waited for until it is committed.
+     */
+    public static final long SEQUENCER_TIMEOUT_MILLIS = Long.getLong("concert.sequencer.timeoutMillis", 5000);
+
+    /**
+     * How seats are stored. "eager" creates a row in the SEATS table for every seat of every performance at
+     * start-up. "lazy" only writes a seat's row when it is booked, as unbooked seats can be worked out from the
+     * venue layout.
+     */
+    public static final String SEAT_STORAGE = System.getProperty("concert.seats.storage", "eager");
+
+    /**
+     * Number of seat changes remembered per performance for clients polling with ?sinceVersion=.
+     */
+    public static final int SEAT_CHANGE_LOG_CAPACITY = Integer.getInteger("concert.seats.changeLogCapacity", 1024);
+
+    /**
+     * How long a booking's Idempotency-Key is remembered, in seconds.
+     */
+    public static final long IDEMPOTENCY_TTL_SECONDS = Long.getLong("concert.idempotency.ttlSeconds", 3600);
+
+    /**
+     * Most Idempotency-Keys remembered at once, across all users.
+     */
+    public static final int IDEMPOTENCY_CACHE_SIZE = Integer.getInteger("concert.idempotency.cacheSize", 10000);
+
+    /**
+     * How long an authentication token is remembered without looking it up in the database, in seconds. This is also
+     * how long a token reissued by another service instance can keep working here, so keep it short.
+     */
+    public static final long AUTH_TOKEN_TTL_SECONDS = Long.getLong("concert.auth.tokenTtlSeconds", 10);
+
+    /**
+     * Most authentication tokens remembered at once.
+     */
+    public static final int AUTH_TOKEN_CACHE_SIZE = Integer.getInteger("concert.auth.tokenCacheSize", 10000);
+
+    /**
+     * Most bookings that can be made in one request to /bookings/batch.
+     */
+    public static final int BATCH_BOOKING_MAX_SIZE = Integer.getInteger("concert.bookings.batchMaxSize", 100);
+
+    /**
+     * Number of worker threads making bookings submitted with "Prefer: respond-async".
+     */
+    public static final int ASYNC_BOOKING_WORKERS = Integer.getInteger("concert.async.workers", 4);
+
+    /**
+     * Number of asynchronous bookings that can be waiting for a worker before new ones are turned away.
+     */
+    public static final int ASYNC_BOOKING_QUEUE_CAPACITY = Integer.getInteger("concert.async.queueCapacity", 256);
+
+    /**
+     * How long the outcome of an asynchronous booking can be looked up for, in seconds.
+     */
+    public static final long BOOKING_ATTEMPT_TTL_SECONDS = Long.getLong("concert.async.attemptTtlSeconds", 600);
+
+    /**
+     * Most asynchronous booking attempts remembered at once.
+     */
+    public static final int BOOKING_ATTEMPTS_CACHE_SIZE = Integer.getInteger("concert.async.attemptsCacheSize", 10000);
+
+    /**
+     * Longest a client can wait for an asynchronous booking to be made, in seconds.
+     */
+    public static final int MAX_LONG_POLL_SECONDS = Integer.getInteger("concert.async.maxWaitSeconds", 30);
+
+    /**
+     * Whether users have to wait their turn in a performance's waiting room before they can get its seats or
+     * book them.
+     */
+    public static final boolean WAITING_ROOM_ENABLED = Boolean.getBoolean("concert.waitingRoom.enabled");
+
+    /**
+     * How many users a second are admitted from each performance's waiting room.
+     */
+    public static final double WAITING_ROOM_ADMIT_PER_SECOND = Double.parseDouble(
+            System.getProperty("concert.waitingRoom.admitPerSecond", "10"));
+
+    /**
+     * Most users admitted from a waiting room at once, after nobody has been waiting for a while.
+     */
+    public static final int WAITING_ROOM_BURST = Integer.getInteger("concert.waitingRoom.burst", 10);
+
+    /**
+     * How long a waiting room token lasts, in seconds.
+     */
+    public static final long WAITING_ROOM_TOKEN_TTL_SECONDS = Long.getLong("concert.waitingRoom.tokenTtlSeconds", 3600);
+
+    /**
+     * Most tokens remembered by each waiting room. Once a room holds this many, users can't join it until some expire.
+     */
+    public static final int WAITING_ROOM_MAX_TOKENS = Integer.getInteger("concert.waitingRoom.maxTokens", 100000);
+
+    /**
+     * Most times an optimistic booking is tried when it keeps clashing with other updates to its seats. If it is
+     * still clashing after that, the booking request gets a 409 error.
+     */
+    public static final int OPTIMISTIC_MAX_ATTEMPTS = Integer.getInteger("concert.optimistic.maxAttempts", 5);
+
+    /**
+     * Longest wait before an optimistic booking's first retry, in milliseconds. It doubles with each retry, and the
+     * actual wait is a random amount up to it.
+     */
+    public static final long OPTIMISTIC_BACKOFF_MILLIS = Long.getLong("concert.optimistic.backoffMillis", 5);
+
+    /**
+     * Number of threads running notification work, such as checking subscriptions after a booking.
+     */
+    public static final int NOTIFICATION_THREADS = Integer.getInteger("concert.notifications.threads", 2);
+
+    /**
+     * Number of notification tasks that can be waiting for a thread. Once full, tasks run on the booking's own thread.
+     */
+    public static final int NOTIFICATION_QUEUE_CAPACITY = Integer.getInteger("concert.notifications.queueCapacity", 1024);
+
+    /**
+     * How long a subscriber waits to be notified before being sent a 503, in seconds.
+     */
+    public static final long SUBSCRIPTION_TIMEOUT_SECONDS = Long.getLong("concert.subscriptions.timeoutSeconds", 300);
+
+    /**
+     * Shortest time between looking at a performance's subscribers, in milliseconds. Bookings in between are dealt
+     * with together. 0 only puts together bookings made while the performance is waiting to be looked at.
+     */
+    public static final long NOTIFICATION_INTERVAL_MILLIS = Long.getLong("concert.notifications.intervalMillis", 10);
+
+    /**
+     * Most events a second sent to each client streaming a performance's seats. Changes in between are coalesced.
+     */
+    public static final int SEAT_EVENTS_PER_SECOND = Integer.getInteger("concert.seatEvents.maxPerSecond", 4);
+
+    /**
+     * How bookings are shared with other service instances using the same database, so their subscribers hear about
+     * them. "memory" only shares them within the JVM, which is all a single instance needs. "multicast" sends them to
+     * a UDP multicast group, standing in for a message broker when running several instances.
+     */
+    public static final String EVENT_BUS = System.getProperty("concert.events.bus", "memory");
+
+    /**
+     * Multicast group the "multicast" event bus sends to.
+     */
+    public static final String EVENT_BUS_GROUP = System.getProperty("concert.events.group", "239.255.42.99");
+
+    /**
+     * Port the "multicast" event bus sends to.
+     */
+    public static final int EVENT_BUS_PORT = Integer.getInteger("concert.events.port", 4446);
+
+    /**
+     * Shortest time between batches of bookings shared with other service instances, in milliseconds.
+     */
+    public static final long EVENT_BUS_BATCH_MILLIS = Long.getLong("concert.events.batchMillis", 20);
+
+    /**
+     * When a booking counts as made. "database" once it is committed to the database. "journal" once it is in the
+     * {@link se325.assignment01.concert.service.journal.BookingJournal}, which is written to the database in the
+     * background. Applies to the direct and bulk booking engines.
+     */
+    public static final String BOOKING_DURABILITY = System.getProperty("concert.bookings.durability", "database");
+
+    /**
+     * File holding the booking journal. Relative to the working directory unless absolute. Bookings the database
+     * keeps rejecting are moved to a file next to it, named with a ".dead" suffix.
+     */
+    public static final String JOURNAL_FILE = System.getProperty("concert.journal.file", "target/concert-bookings.journal");
+
+    /**
+     * Size of the booking journal file, in bytes.
+     */
+    public static final int JOURNAL_SIZE_BYTES = Integer.getInteger("concert.journal.sizeBytes", 64 * 1024 * 1024);
+
+    /**
+     * When the booking journal is forced to disk. "always" before a booking is acknowledged, so it survives losing
+     * power. "never" leaves it to the operating system, so it only survives the service being killed.
+     */
+    public static final String JOURNAL_FSYNC = System.getProperty("concert.journal.fsync", "always");
+
+    /**
+     * Most journalled bookings written to the database in one transaction.
+     */
+    public static final int JOURNAL_WRITE_BATCH_SIZE = Integer.getInteger("concert.journal.writeBatchSize", 100);
+
+    /**
+     * How many times a batch of journalled bookings is tried before giving up on it. Its bookings are then tried
+     * one at a time, and any the database still rejects are moved to the journal's dead-letter file.
+     */
+    public static final int JOURNAL_WRITE_ATTEMPTS = Integer.getInteger("concert.journal.writeAttempts", 5);
+
+    /**
+     * Milliseconds to wait before trying a failed batch of journalled bookings again.
+     */
+    public static final long JOURNAL_RETRY_MILLIS = Long.getLong("concert.journal.retryMillis", 1000);
+
+    public static boolean isSequencerEnabled() {
+        return "sequencer".equalsIgnoreCase(BOOKING_ENGINE);
+    }
+
+    public static boolean isBulkUpdateEnabled() {
+        return "bulk".equalsIgnoreCase(BOOKING_ENGINE);
+    }
+
+    public static boolean isOptimisticEnabled() {
+        return "optimistic".equalsIgnoreCase(BOOKING_ENGINE);
+    }
+
+    public static boolean isJournalEnabled() {
+        return "journal".equalsIgnoreCase(BOOKING_DURABILITY);
+    }
+
+    public static boolean isLazySeatStorage() {
+        return "lazy".equalsIgnoreCase(SEAT_STORAGE);
+    }
+
+    private ServiceConfig() {}
+}
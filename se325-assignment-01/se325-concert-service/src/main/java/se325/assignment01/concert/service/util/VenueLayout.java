@@ -0,0 +1,360 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.domain.Seat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Models the layout of seats at a concert venue. A venue is made up of sections, each with rows of the same
+ * number of seats, and each row belongs to a price band. Layouts are defined as data and loaded by {@link VenueLayouts}.
+ * <p>
+ * Seats are addressed in two ways, neither of which needs a label:
+ * <ul>
+ *     <li>A seat id packs the section, row and seat number into an int (see {@link #seatId(int, int, int)})</li>
+ *     <li>A seat index numbers every seat in the venue from 0, section by section and row by row. This is what
+ *     availability bitmaps are indexed by</li>
+ * </ul>
+ * Labels (e.g. "C5", or "101-C5" in a named section) are only parsed and produced at the edges of the service.
+ */
+public class VenueLayout {
+
+    // Seat id layout: 8 bits of section, 10 bits of row, 14 bits of seat number
+    private static final int ROW_BITS = 10;
+    private static final int SEAT_BITS = 14;
+    private static final int MAX_SECTIONS = 1 << 8;
+    private static final int MAX_ROWS = 1 << ROW_BITS;
+
+    // A row must fit in one word of an availability bitmap
+    public static final int MAX_SEATS_PER_ROW = Long.SIZE;
+
+    private final String name;
+    private final Section[] sections;
+    private final PriceBand[] priceBands;
+    private final Map<String, Integer> sectionsByPrefix = new HashMap<>();
+    private final int numSeats;
+
+    // Every row in the venue, numbered section by section
+    private final int[] rowFirstSeat;
+    private final int[] rowSection;
+    private final int[] rowBand;
+
+    // Rows of each price band, front to back
+    private final int[][] bandRows;
+    private final int[] bandSeats;
+
+    public VenueLayout(String name, List<Section> sections) {
+        if (sections.isEmpty() || sections.size() > MAX_SECTIONS)
+            throw new IllegalArgumentException("Venue " + name + " must have between 1 and " + MAX_SECTIONS + " sections");
+
+        this.name = name;
+        this.sections = sections.toArray(new Section[0]);
+
+        List<PriceBand> bands = new ArrayList<>();
+        List<Integer> firstSeats = new ArrayList<>();
+        List<Integer> rowSections = new ArrayList<>();
+        List<Integer> rowBands = new ArrayList<>();
+        int seatCount = 0;
+
+        for (int s = 0; s < this.sections.length; s++) {
+            Section section = this.sections[s];
+            if (section.seatsPerRow < 1 || section.seatsPerRow > MAX_SEATS_PER_ROW)
+                throw new IllegalArgumentException("Section " + section.name + " must have between 1 and " + MAX_SEATS_PER_ROW + " seats per row");
+            if (sectionsByPrefix.put(section.labelPrefix(), s) != null)
+                throw new IllegalArgumentException("Venue " + name + " has more than one section named " + section.name);
+
+            section.firstSeat = seatCount;
+            for (PriceBand band : section.priceBands) {
+                int bandIndex = indexOfBand(bands, band);
+                bands.get(bandIndex).numRows += band.numRows;
+                for (int r = 0; r < band.numRows; r++) {
+                    firstSeats.add(seatCount);
+                    rowSections.add(s);
+                    rowBands.add(bandIndex);
+                    seatCount += section.seatsPerRow;
+                }
+            }
+            section.numRows = (seatCount - section.firstSeat) / section.seatsPerRow;
+            if (section.numRows > MAX_ROWS)
+                throw new IllegalArgumentException("Section " + section.name + " has more than " + MAX_ROWS + " rows");
+        }
+
+        this.priceBands = bands.toArray(new PriceBand[0]);
+        this.numSeats = seatCount;
+        this.rowFirstSeat = firstSeats.stream().mapToInt(Integer::intValue).toArray();
+        this.rowSection = rowSections.stream().mapToInt(Integer::intValue).toArray();
+        this.rowBand = rowBands.stream().mapToInt(Integer::intValue).toArray();
+
+        this.bandRows = new int[priceBands.length][];
+        for (int b = 0; b < priceBands.length; b++) {
+            final int band = b;
+            bandRows[b] = IntStream.range(0, rowBand.length).filter(row -> rowBand[row] == band).toArray();
+        }
+
+        this.bandSeats = new int[priceBands.length];
+        for (int row = 0; row < rowBand.length; row++) {
+            bandSeats[rowBand[row]] += rowLength(row);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    /**
+     * Gets the venue's price bands. Each band's numRows is its total across all sections
+     */
+    public PriceBand[] getPriceBands() {
+        return priceBands;
+    }
+
+    /**
+     * Gets the number of seats in a price band, across all sections
+     * @param priceBandIndex Index of the price band in {@link #getPriceBands()}
+     */
+    public int getNumSeats(int priceBandIndex) {
+        return bandSeats[priceBandIndex];
+    }
+
+    /**
+     * Finds a price band by name
+     * @param bandName The band's name, e.g. "Gold Seating"
+     * @return The band's position in {@link #getPriceBands()}, or -1 if there is no such band
+     */
+    public int priceBandIndexOf(String bandName) {
+        for (int i = 0; i < priceBands.length; i++) {
+            if (priceBands[i].name.equals(bandName))
+                return i;
+        }
+        return -1;
+    }
+
+    // Seat ids
+    // --------------------------------------------------------------------
+
+    /**
+     * Packs a seat's position into a seat id
+     * @param section Section number, from 0
+     * @param row Row number within the section, from 0
+     * @param seatNum Seat number within the row, from 1
+     */
+    public static int seatId(int section, int row, int seatNum) {
+        return (section << (ROW_BITS + SEAT_BITS)) | (row << SEAT_BITS) | seatNum;
+    }
+
+    public static int sectionOf(int seatId) {
+        return seatId >>> (ROW_BITS + SEAT_BITS);
+    }
+
+    public static int rowOf(int seatId) {
+        return (seatId >>> SEAT_BITS) & (MAX_ROWS - 1);
+    }
+
+    public static int seatNumOf(int seatId) {
+        return seatId & ((1 << SEAT_BITS) - 1);
+    }
+
+    /**
+     * Converts a seat label into a seat id
+     * @param label A label such as "C5" or "101-C5"
+     * @return The seat id, or -1 if the label does not name a seat in this venue
+     */
+    public int seatIdOf(String label) {
+        if (label == null)
+            return -1;
+
+        int dash = label.lastIndexOf('-');
+        Integer section = sectionsByPrefix.get(label.substring(0, dash + 1));
+        if (section == null)
+            return -1;
+
+        // Row letters, then seat number
+        int i = dash + 1;
+        int row = 0;
+        while (i < label.length() && label.charAt(i) >= 'A' && label.charAt(i) <= 'Z' && row <= MAX_ROWS) {
+            row = row * 26 + (label.charAt(i++) - 'A' + 1);
+        }
+        row--;
+
+        int seatNum = 0;
+        int digits = 0;
+        while (i < label.length() && label.charAt(i) >= '0' && label.charAt(i) <= '9' && seatNum <= MAX_SEATS_PER_ROW) {
+            if (digits++ == 0 && label.charAt(i) == '0')
+                return -1;
+            seatNum = seatNum * 10 + (label.charAt(i++) - '0');
+        }
+
+        Section s = sections[section];
+        if (i != label.length() || row < 0 || row >= s.numRows || seatNum < 1 || seatNum > s.seatsPerRow)
+            return -1;
+
+        return seatId(section, row, seatNum);
+    }
+
+    /**
+     * Converts a seat id into its label
+     */
+    public String labelOf(int seatId) {
+        StringBuilder rowLabel = new StringBuilder();
+        for (int row = rowOf(seatId) + 1; row > 0; row = (row - 1) / 26) {
+            rowLabel.insert(0, (char) ('A' + (row - 1) % 26));
+        }
+        return sections[sectionOf(seatId)].labelPrefix() + rowLabel + seatNumOf(seatId);
+    }
+
+    // Seat indexes
+    // --------------------------------------------------------------------
+
+    /**
+     * Converts a seat id into the seat's position in the venue
+     */
+    public int seatIndexOf(int seatId) {
+        Section section = sections[sectionOf(seatId)];
+        return section.firstSeat + rowOf(seatId) * section.seatsPerRow + seatNumOf(seatId) - 1;
+    }
+
+    /**
+     * Converts a seat's position in the venue into its seat id
+     */
+    public int seatIdAt(int seatIndex) {
+        int row = rowAt(seatIndex);
+        int section = rowSection[row];
+        int seatNum = seatIndex - rowFirstSeat[row] + 1;
+        return seatId(section, (rowFirstSeat[row] - sections[section].firstSeat) / sections[section].seatsPerRow, seatNum);
+    }
+
+    /**
+     * Converts a seat label into the seat's position in the venue
+     * @return The seat index, or -1 if the label does not name a seat in this venue
+     */
+    public int seatIndexOf(String label) {
+        int seatId = seatIdOf(label);
+        return seatId < 0 ? -1 : seatIndexOf(seatId);
+    }
+
+    public String labelAt(int seatIndex) {
+        return labelOf(seatIdAt(seatIndex));
+    }
+
+    public int priceBandAt(int seatIndex) {
+        return rowBand[rowAt(seatIndex)];
+    }
+
+    public BigDecimal priceAt(int seatIndex) {
+        return priceBands[priceBandAt(seatIndex)].price;
+    }
+
+    // Rows
+    // --------------------------------------------------------------------
+
+    /**
+     * Gets the rows of a price band, front to back. Rows are numbered across the whole venue
+     */
+    public int[] rowsOfBand(int priceBandIndex) {
+        return bandRows[priceBandIndex];
+    }
+
+    public int rowFirstSeat(int row) {
+        return rowFirstSeat[row];
+    }
+
+    public int rowLength(int row) {
+        return sections[rowSection[row]].seatsPerRow;
+    }
+
+    private int rowAt(int seatIndex) {
+        int row = Arrays.binarySearch(rowFirstSeat, seatIndex);
+        return row >= 0 ? row : -row - 2;
+    }
+
+    /**
+     * Creates a {@link Seat} object for every seat in the venue on the given date, handing each to the consumer
+     * as it is made so the whole venue never has to be held in memory.
+     *
+     * @param date the date
+     * @param seats receives each Seat
+     */
+    public void createSeatsFor(LocalDateTime date, Consumer<Seat> seats) {
+        for (int seatIndex = 0; seatIndex < numSeats; seatIndex++) {
+            seats.accept(createSeat(date, seatIndex, false));
+        }
+    }
+
+    /**
+     * Creates a {@link Seat} object for one seat in the venue
+     *
+     * @param date the date
+     * @param seatIndex the seat's position in the venue
+     * @param isBooked whether the seat is booked
+     * @return the Seat, labelled and priced according to the layout
+     */
+    public Seat createSeat(LocalDateTime date, int seatIndex, boolean isBooked) {
+        return new Seat(labelAt(seatIndex), isBooked, date, priceAt(seatIndex));
+    }
+
+    private static int indexOfBand(List<PriceBand> bands, PriceBand band) {
+        for (int i = 0; i < bands.size(); i++) {
+            PriceBand existing = bands.get(i);
+            if (existing.name.equals(band.name)) {
+                if (existing.price.compareTo(band.price) != 0)
+                    throw new IllegalArgumentException("Price band " + band.name + " has more than one price");
+                return i;
+            }
+        }
+        bands.add(new PriceBand(band.name, band.price, 0));
+        return bands.size() - 1;
+    }
+
+    /**
+     * A block of rows in a venue that all have the same number of seats
+     */
+    public static class Section {
+        public String name;
+        public int seatsPerRow;
+        public List<PriceBand> priceBands;
+
+        private int firstSeat;
+        private int numRows;
+
+        public Section() {}
+
+        public Section(String name, int seatsPerRow, List<PriceBand> priceBands) {
+            this.name = name;
+            this.seatsPerRow = seatsPerRow;
+            this.priceBands = priceBands;
+        }
+
+        // Seats in a named section are labelled "<name>-<row><seat>", otherwise just "<row><seat>"
+        private String labelPrefix() {
+            return name == null || name.isEmpty() ? "" : name + "-";
+        }
+    }
+
+    /**
+     * A number of rows sold at the same price
+     */
+    public static class PriceBand {
+        public String name;
+        public BigDecimal price;
+        public int numRows;
+
+        public PriceBand() {}
+
+        public PriceBand(String name, BigDecimal price, int numRows) {
+            this.name = name;
+            this.price = price;
+            this.numRows = numRows;
+        }
+    }
+}
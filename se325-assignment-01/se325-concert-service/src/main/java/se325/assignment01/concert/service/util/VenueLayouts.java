@@ -0,0 +1,94 @@
+package se325.assignment01.concert.service.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Singleton class that holds the venue layouts, and which venue each concert is held at. These are read from a
+ * JSON resource (venues.json by default, see {@link ServiceConfig#VENUES_RESOURCE}) when first needed.
+ * <p>
+ * The "theatre" layout should match up with seat-data-module.js, which draws the seat map for the booking page.
+ */
+public class VenueLayouts {
+
+    private static final Logger _logger = LoggerFactory.getLogger(VenueLayouts.class);
+    private static VenueLayouts _instance = null;
+
+    private final Map<String, VenueLayout> layouts = new HashMap<>();
+    private final Map<Long, VenueLayout> concertVenues = new HashMap<>();
+    private final VenueLayout defaultVenue;
+
+    protected VenueLayouts(Definition definition) {
+        for (VenueDefinition venue : definition.venues) {
+            layouts.put(venue.name, new VenueLayout(venue.name, venue.sections));
+        }
+
+        defaultVenue = get(definition.defaultVenue);
+        for (Map.Entry<Long, String> concertVenue : definition.concertVenues.entrySet()) {
+            concertVenues.put(concertVenue.getKey(), get(concertVenue.getValue()));
+        }
+
+        for (VenueLayout layout : layouts.values()) {
+            _logger.debug("Loaded venue " + layout.getName() + " with " + layout.getNumSeats() + " seats");
+        }
+    }
+
+    public static synchronized VenueLayouts instance() {
+        if (_instance == null) {
+            _instance = new VenueLayouts(read(ServiceConfig.VENUES_RESOURCE));
+        }
+        return _instance;
+    }
+
+    /**
+     * Gets the layout of the venue a concert is held at
+     * @param concertId ID of the concert
+     * @return The concert's venue, or the default venue if the concert has not been given one
+     */
+    public VenueLayout forConcert(long concertId) {
+        return concertVenues.getOrDefault(concertId, defaultVenue);
+    }
+
+    /**
+     * Gets a venue's layout by name, including venues no concert is held at
+     * @throws IllegalStateException if there is no such venue
+     */
+    VenueLayout get(String name) {
+        VenueLayout layout = layouts.get(name);
+        if (layout == null)
+            throw new IllegalStateException("No venue named " + name);
+        return layout;
+    }
+
+    private static Definition read(String resource) {
+        ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        try (InputStream in = VenueLayouts.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null)
+                throw new IllegalStateException("Venue resource " + resource + " not found");
+            return mapper.readValue(in, Definition.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read venue resource " + resource, e);
+        }
+    }
+
+    // Shape of the JSON resource
+    public static class Definition {
+        public String defaultVenue;
+        public List<VenueDefinition> venues;
+        public Map<Long, String> concertVenues = new HashMap<>();
+    }
+
+    public static class VenueDefinition {
+        public String name;
+        public List<VenueLayout.Section> sections;
+    }
+}
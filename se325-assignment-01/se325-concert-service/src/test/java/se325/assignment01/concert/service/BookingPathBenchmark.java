@@ -0,0 +1,153 @@
+package se325.assignment01.concert.service;
+
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.services.BookingSequencer;
+import se325.assignment01.concert.service.services.BookingWriter;
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.ConcertUtils;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the latency of booking seats through the booking engine the service is configured with, against the
+ * original booking path as a baseline. The engine books them the same way ConcertResource does: the seats are
+ * claimed in the {@link SeatAvailabilityIndex} and written with {@link BookingWriter#writeClaimed}, or with the
+ * sequencer engine handed to the performance's {@link BookingSequencer}. The baseline is the path from before seats
+ * were claimed in memory, which locks the seats with PESSIMISTIC_WRITE (see ContentionBenchmark). The engines are:
+ * <ul>
+ *     <li>direct (the default): one transaction with an UPDATE per seat</li>
+ *     <li>bulk: one transaction with a single conditional UPDATE for all the seats</li>
+ *     <li>optimistic: one transaction with no locks, relying on the seats' versions</li>
+ *     <li>sequencer: a writer thread per performance, committing queued bookings in groups</li>
+ * </ul>
+ * The engine is only read once, so compare the engines by running this once per engine, e.g. with
+ * -Dconcert.booking.engine=bulk. Setting -Dconcert.bookings.durability=journal measures journalled bookings instead.
+ * Not a test, run it with a main method: BookingPathBenchmark [rounds]. It uses (and wipes) the same database as
+ * the web service, so don't run it while the service is running.
+ */
+public class BookingPathBenchmark {
+
+    private static final int SEATS_PER_BOOKING = 4;
+
+    private interface BookingPath {
+        Booking book(User user, BookingRequestDTO bookingDTO, PerformanceSeats performance)
+                throws InterruptedException, ExecutionException;
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String name = ServiceConfig.isJournalEnabled() ? ServiceConfig.BOOKING_ENGINE + "+journal" : ServiceConfig.BOOKING_ENGINE;
+        BookingPath baseline = (user, bookingDTO, performance) -> ContentionBenchmark.bookWithLocks(user, bookingDTO);
+
+        // Warm up
+        run("pessimistic", baseline);
+        run(name, BookingPathBenchmark::book);
+
+        long[] baselineLatencies = measure("pessimistic", baseline, rounds);
+        long[] latencies = measure(name, BookingPathBenchmark::book, rounds);
+        report("pessimistic", baselineLatencies);
+        report(name, latencies);
+        System.out.printf("%s p50 is %.2fx the pessimistic baseline's, p99 is %.2fx%n", name,
+                (double) percentile(latencies, 0.5) / percentile(baselineLatencies, 0.5),
+                (double) percentile(latencies, 0.99) / percentile(baselineLatencies, 0.99));
+
+        BookingSequencer.stopAll();
+    }
+
+    /**
+     * Runs a booking path several times
+     * @return The latency of each booking, in nanoseconds, sorted
+     */
+    private static long[] measure(String name, BookingPath path, int rounds) throws InterruptedException, ExecutionException {
+        long[] latencies = new long[0];
+        for (int round = 0; round < rounds; round++) {
+            long[] roundLatencies = run(name, path);
+            long[] all = Arrays.copyOf(latencies, latencies.length + roundLatencies.length);
+            System.arraycopy(roundLatencies, 0, all, latencies.length, roundLatencies.length);
+            latencies = all;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /**
+     * Resets the database, then books every seat of every concert date a few seats at a time
+     * @return The latency of each booking, in nanoseconds
+     */
+    private static long[] run(String name, BookingPath path) throws InterruptedException, ExecutionException {
+        PersistenceManager.instance().reset();
+        ConcertUtils.initConcerts();
+
+        User user;
+        List<Concert> concerts;
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            user = em.find(User.class, 1L);
+            concerts = em.createQuery("select c from Concert c", Concert.class).getResultList();
+            concerts.forEach(c -> c.getDates().size());
+        } finally {
+            em.close();
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        for (Concert concert : concerts) {
+            for (LocalDateTime date : concert.getDates()) {
+                PerformanceSeats performance = SeatAvailabilityIndex.instance().get(date);
+                for (char row = 'A'; row <= 'J'; row++) {
+                    for (int seat = 1; seat <= 12; seat += SEATS_PER_BOOKING) {
+                        List<String> labels = new ArrayList<>();
+                        for (int i = seat; i < seat + SEATS_PER_BOOKING; i++) {
+                            labels.add("" + row + i);
+                        }
+
+                        long start = System.nanoTime();
+                        Booking booking = path.book(user, new BookingRequestDTO(concert.getID(), date, labels), performance);
+                        latencies.add(System.nanoTime() - start);
+
+                        if (booking == null)
+                            throw new IllegalStateException(name + " failed to book " + labels + " on " + date);
+                    }
+                }
+            }
+        }
+
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static Booking book(User user, BookingRequestDTO bookingDTO, PerformanceSeats performance)
+            throws InterruptedException, ExecutionException {
+        int[] seatIndexes = performance.toSeatIndexes(bookingDTO.getSeatLabels());
+
+        if (ServiceConfig.isSequencerEnabled()) {
+            Future<Booking> result = BookingSequencer.forPerformance(bookingDTO.getDate())
+                    .submit(user, bookingDTO, performance, seatIndexes);
+            return result == null ? null : result.get();
+        }
+
+        if (!performance.claim(seatIndexes))
+            return null;
+        return BookingWriter.writeClaimed(user, bookingDTO, performance, seatIndexes);
+    }
+
+    private static void report(String name, long[] latencies) {
+        double mean = Arrays.stream(latencies).average().orElse(0);
+        System.out.printf("%-12s bookings=%d mean=%.1fus p50=%.1fus p99=%.1fus%n", name, latencies.length,
+                mean / 1000, percentile(latencies, 0.5) / 1000.0, percentile(latencies, 0.99) / 1000.0);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
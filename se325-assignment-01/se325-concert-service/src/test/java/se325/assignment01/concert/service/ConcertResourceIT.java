@@ -3,21 +3,34 @@ package se325.assignment01.concert.service;
 import org.junit.*;
 import se325.assignment01.concert.common.dto.*;
 import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.types.BookingOutcome;
 import se325.assignment01.concert.common.types.Genre;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.InboundSseEvent;
+import javax.ws.rs.sse.SseEventSource;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -699,12 +712,25 @@ public class ConcertResourceIT {
         testBadSubscription(1, LocalDateTime.of(2030, 2, 15, 20, 0, 0));
     }
 
+    /**
+     * Tests that a 400 error is returned when trying to make a subscription for a percentage that can't be reached.
+     */
+    @Test
+    public void testBadSubscription_PercentageOver100() throws InterruptedException, ExecutionException, TimeoutException {
+
+        testBadSubscription(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), 101);
+    }
+
     private void testBadSubscription(long concertId, LocalDateTime date) throws InterruptedException, ExecutionException, TimeoutException {
+        testBadSubscription(concertId, date, 50);
+    }
+
+    private void testBadSubscription(long concertId, LocalDateTime date, int percentageBooked) throws InterruptedException, ExecutionException, TimeoutException {
         // Log in
         login(client, "testuser", "pa55word");
 
         // Attempt to subscribe
-        ConcertInfoSubscriptionDTO subInfo = new ConcertInfoSubscriptionDTO(concertId, date, 50);
+        ConcertInfoSubscriptionDTO subInfo = new ConcertInfoSubscriptionDTO(concertId, date, percentageBooked);
         Future<Response> future = client.target(WEB_SERVICE_URI + "/subscribe/concertInfo")
                 .request().async().post(Entity.json(subInfo));
 
@@ -801,9 +827,657 @@ public class ConcertResourceIT {
 
     }
 
+    /**
+     * Tests that seats can be held, that held seats are reported as booked to everyone, and that the hold can be
+     * confirmed into a booking.
+     */
+    @Test
+    public void testHoldAndConfirmSeats() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // Hold seats
+        BookingRequestDTO holdReq = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0),
+                Arrays.asList("C5", "C6"));
+        Response response = client.target(WEB_SERVICE_URI + "/holds").request().post(Entity.json(holdReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        SeatHoldDTO hold = response.readEntity(SeatHoldDTO.class);
+        assertTrue(hold.getTtlSeconds() > 0);
+
+        // Held seats are no longer available
+        List<SeatDTO> bookedSeats = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked")
+                .request().get(new GenericType<List<SeatDTO>>() {
+                });
+        assertEquals(2, bookedSeats.size());
+
+        // Confirm the hold
+        response = client.target(WEB_SERVICE_URI + "/holds/" + hold.getId() + "/booking").request().post(null);
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        BookingDTO booking = client.target(response.getLocation()).request().get(BookingDTO.class);
+        assertEquals(2, booking.getSeats().size());
+
+        // The hold can't be confirmed twice
+        response = client.target(WEB_SERVICE_URI + "/holds/" + hold.getId() + "/booking").request().post(null);
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that seats held by one user can't be booked by another.
+     */
+    @Test
+    public void testAttemptBookingHeldSeats() {
+        // Log in and hold seats as user 1
+        login(client, "testuser", "pa55word");
+        BookingRequestDTO holdReq = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0),
+                Arrays.asList("C5", "C6"));
+        Response response = client.target(WEB_SERVICE_URI + "/holds").request().post(Entity.json(holdReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        SeatHoldDTO hold = response.readEntity(SeatHoldDTO.class);
+
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            // User 2 can't book any of the held seats
+            login(user2Client, "testuser2", "pa55word");
+            response = attemptBooking(user2Client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C6", "C7");
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+
+            // Nor confirm user 1's hold
+            response = user2Client.target(WEB_SERVICE_URI + "/holds/" + hold.getId() + "/booking").request().post(null);
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+        } finally {
+            user2Client.close();
+        }
+    }
+
+    /**
+     * Tests that the best available seats in a price band are booked next to each other, at the front and centre
+     * of the band, that a 403 error is returned once the band is full, and that a 400 error is returned for more
+     * seats than the band has.
+     */
+    @Test
+    public void testBestAvailableBooking() {
+        // Log in
+        login(client, "testuser", "pa55word");
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+        // Gold seating is rows F to H, so the best 4 seats are in the middle of row F
+        Response response = client.target(WEB_SERVICE_URI + "/bookings/best-available").request()
+                .post(Entity.json(new BestAvailableRequestDTO(1, date, 4, "Gold Seating")));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        BookingDTO booking = client.target(response.getLocation()).request().get(BookingDTO.class);
+        List<String> labels = booking.getSeats().stream().map(SeatDTO::getLabel).sorted().collect(Collectors.toList());
+        assertEquals(Arrays.asList("F5", "F6", "F7", "F8"), labels);
+
+        // Only 32 gold seats are left
+        response = client.target(WEB_SERVICE_URI + "/bookings/best-available").request()
+                .post(Entity.json(new BestAvailableRequestDTO(1, date, 33, "Gold Seating")));
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+
+        // Nonexistent price band
+        response = client.target(WEB_SERVICE_URI + "/bookings/best-available").request()
+                .post(Entity.json(new BestAvailableRequestDTO(1, date, 2, "Bronze Seating")));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        // More seats than the band has
+        response = client.target(WEB_SERVICE_URI + "/bookings/best-available").request()
+                .post(Entity.json(new BestAvailableRequestDTO(1, date, Integer.MAX_VALUE, "Gold Seating")));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testGetSeatSummary() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // Book rows A and B, which are Platinum seats
+        attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), 'A', 'B');
+
+        AvailabilitySummaryDTO summary = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00/summary")
+                .request().get(AvailabilitySummaryDTO.class);
+
+        assertEquals(120, summary.getNumSeats());
+        assertEquals(24, summary.getNumBooked());
+        assertEquals(20, summary.getPercentageBooked());
+
+        assertEquals(3, summary.getPriceBands().size());
+        PriceBandAvailabilityDTO platinum = summary.getPriceBands().get(0);
+        assertEquals("Platinum Seating", platinum.getPriceBand());
+        assertEquals(60, platinum.getNumSeats());
+        assertEquals(24, platinum.getNumBooked());
+        assertEquals(0, summary.getPriceBands().get(1).getNumBooked());
+    }
+
+    @Test
+    public void testGetSeatSummaryForNonexistentDate() {
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2020-02-16T20:00:00/summary").request().get();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testGetSeatsNotModified() {
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked").request().get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag etag = response.getEntityTag();
+        assertNotNull(etag);
+        assertEquals(HttpHeaders.ACCEPT, response.getHeaderString(HttpHeaders.VARY));
+        response.close();
+
+        // Nothing has changed
+        response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked").request()
+                .header(HttpHeaders.IF_NONE_MATCH, etag).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        response.close();
+
+        // Book some seats, so the seats have changed
+        login(client, "testuser", "pa55word");
+        attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C5", "C6").close();
+
+        response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked").request()
+                .header(HttpHeaders.IF_NONE_MATCH, etag).get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertNotEquals(etag, response.getEntityTag());
+        assertEquals(2, response.readEntity(new GenericType<List<SeatDTO>>() {}).size());
+    }
+
+    @Test
+    public void testGetSeatChangesSinceVersion() {
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked").request().get();
+        long version = Long.parseLong(response.getEntityTag().getValue());
+        response.close();
+
+        // Book some seats
+        login(client, "testuser", "pa55word");
+        attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C5", "C6").close();
+
+        SeatAvailabilityDeltaDTO delta = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?sinceVersion=" + version)
+                .request().get(SeatAvailabilityDeltaDTO.class);
+
+        assertEquals(version, delta.getSinceVersion());
+        assertTrue(delta.getVersion() > version);
+        List<String> labels = delta.getBookedSeats().stream().map(SeatDTO::getLabel).sorted().collect(Collectors.toList());
+        assertEquals(Arrays.asList("C5", "C6"), labels);
+        assertEquals(0, delta.getUnbookedSeats().size());
+
+        // Nothing since then
+        delta = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?sinceVersion=" + delta.getVersion())
+                .request().get(SeatAvailabilityDeltaDTO.class);
+        assertEquals(0, delta.getBookedSeats().size());
+
+        // A version the service doesn't know about
+        response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?sinceVersion=0").request().get();
+        assertEquals(Response.Status.GONE.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testGetSeatBitmap() throws IOException {
+        // Log in and book the first seat of rows A and J
+        login(client, "testuser", "pa55word");
+        attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "A1", "J1").close();
+
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00").request()
+                .accept("application/vnd.concert.seat-bitmap").get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag etag = response.getEntityTag();
+        assertEquals(HttpHeaders.ACCEPT, response.getHeaderString(HttpHeaders.VARY));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response.readEntity(byte[].class)));
+        assertEquals(1, in.readByte());
+        assertEquals(in.readLong() + "-bin", etag.getValue());
+        assertEquals(120, in.readInt());
+
+        assertEquals(3, in.readByte());
+        assertEquals("Platinum Seating", in.readUTF());
+        assertEquals("150", in.readUTF());
+        assertEquals(60, in.readInt());
+        for (int band = 1; band < 3; band++) {
+            in.readUTF();
+            in.readUTF();
+            in.readInt();
+        }
+
+        // 15 bytes for 120 seats. A1 is seat 0 and J1 is seat 108
+        byte[] bitmap = new byte[15];
+        in.readFully(bitmap);
+        assertEquals(-1, in.read());
+        assertEquals(1, bitmap[0]);
+        assertEquals(1 << 4, bitmap[13]);
+        assertEquals(2, BitSet.valueOf(bitmap).cardinality());
+
+        // Nothing has changed
+        response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00").request()
+                .accept("application/vnd.concert.seat-bitmap").header(HttpHeaders.IF_NONE_MATCH, etag).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        response.close();
+
+        // The bitmap's ETag doesn't match the JSON form of the same seats
+        response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00").request()
+                .header(HttpHeaders.IF_NONE_MATCH, etag).get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertNotEquals(etag, response.getEntityTag());
+    }
+
+    @Test
+    public void testRetryBookingWithIdempotencyKey() {
+        // Log in
+        login(client, "testuser", "pa55word");
+        BookingRequestDTO bookingRequest = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("C5", "C6"));
+
+        Response response = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Idempotency-Key", "order-1").post(Entity.json(bookingRequest));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        URI location = response.getLocation();
+        response.close();
+
+        // Retrying gets the same booking back, rather than a 403 because the seats are booked
+        response = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Idempotency-Key", "order-1").post(Entity.json(bookingRequest));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        assertEquals(location, response.getLocation());
+        response.close();
+
+        // Only one booking was made
+        List<BookingDTO> bookings = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .get(new GenericType<List<BookingDTO>>() {});
+        assertEquals(1, bookings.size());
+
+        // Another user's key is their own
+        login(client, "testuser2", "pa55word");
+        response = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Idempotency-Key", "order-1").post(Entity.json(bookingRequest));
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testBatchBooking() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // Two dates of concert 2, a date concert 2 isn't on, and seats already taken by the first booking
+        List<BookingRequestDTO> bookingRequests = Arrays.asList(
+                new BookingRequestDTO(2, LocalDateTime.of(2019, 9, 12, 20, 0, 0), Arrays.asList("A1", "A2")),
+                new BookingRequestDTO(2, LocalDateTime.of(2019, 9, 14, 20, 0, 0), Arrays.asList("A1", "A2")),
+                new BookingRequestDTO(2, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("A1", "A2")),
+                new BookingRequestDTO(2, LocalDateTime.of(2019, 9, 12, 20, 0, 0), Arrays.asList("A2", "A3")));
+
+        List<BookingOutcomeDTO> outcomes = client.target(WEB_SERVICE_URI + "/bookings/batch").request()
+                .post(Entity.json(bookingRequests), new GenericType<List<BookingOutcomeDTO>>() {});
+
+        assertEquals(4, outcomes.size());
+        assertEquals(BookingOutcome.Booked, outcomes.get(0).getOutcome());
+        assertEquals(BookingOutcome.Booked, outcomes.get(1).getOutcome());
+        assertEquals(BookingOutcome.InvalidConcert, outcomes.get(2).getOutcome());
+        assertEquals(BookingOutcome.SeatsUnavailable, outcomes.get(3).getOutcome());
+        assertNull(outcomes.get(3).getBookingId());
+
+        // The bookings were made
+        BookingDTO booking = client.target(WEB_SERVICE_URI + "/bookings/" + outcomes.get(1).getBookingId()).request()
+                .get(BookingDTO.class);
+        assertEquals(LocalDateTime.of(2019, 9, 14, 20, 0, 0), booking.getDate());
+        assertEquals(2, booking.getSeats().size());
+
+        List<BookingDTO> bookings = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .get(new GenericType<List<BookingDTO>>() {});
+        assertEquals(2, bookings.size());
+    }
+
+    @Test
+    public void testAttemptBatchBookingWhenNotAuthenticated() {
+        List<BookingRequestDTO> bookingRequests = Collections.singletonList(
+                new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("A1")));
+
+        Response response = client.target(WEB_SERVICE_URI + "/bookings/batch").request().post(Entity.json(bookingRequests));
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testAsyncBooking() {
+        // Log in
+        login(client, "testuser", "pa55word");
+        BookingRequestDTO bookingRequest = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("C5", "C6"));
+
+        Response response = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Prefer", "respond-async").post(Entity.json(bookingRequest));
+        assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.getStatus());
+        URI attemptLocation = response.getLocation();
+        response.close();
+
+        // Wait for the booking to be made
+        BookingAttemptDTO attempt = client.target(attemptLocation).queryParam("wait", 10).request().get(BookingAttemptDTO.class);
+        assertEquals(BookingOutcome.Booked, attempt.getOutcome());
+
+        BookingDTO booking = client.target(attempt.getBookingLocation()).request().get(BookingDTO.class);
+        assertEquals(2, booking.getSeats().size());
+
+        // The same seats can't be booked again
+        response = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Prefer", "respond-async").post(Entity.json(bookingRequest));
+        assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.getStatus());
+        attempt = client.target(response.getLocation()).queryParam("wait", 10).request().get(BookingAttemptDTO.class);
+        assertEquals(BookingOutcome.SeatsUnavailable, attempt.getOutcome());
+        assertNull(attempt.getBookingLocation());
+
+        // Another user can't see the attempt
+        login(client, "testuser2", "pa55word");
+        response = client.target(attemptLocation).request().get();
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testJoinWaitingRoom() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        Response response = client.target(WEB_SERVICE_URI + "/waiting-room/1/2020-02-15T20:00:00").request().post(null);
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        WaitingRoomTicketDTO ticket = response.readEntity(WaitingRoomTicketDTO.class);
+        assertEquals(1, ticket.getConcertId());
+        assertEquals(LocalDateTime.of(2020, 2, 15, 20, 0, 0), ticket.getDate());
+        assertNotNull(ticket.getToken());
+
+        // The first user in is admitted straight away
+        assertTrue(ticket.isAdmitted());
+        assertEquals(0, ticket.getPosition());
+
+        ticket = client.target(response.getLocation()).request().get(WaitingRoomTicketDTO.class);
+        assertTrue(ticket.isAdmitted());
+
+        // Joining again gives back the same ticket rather than another place in the queue
+        response = client.target(WEB_SERVICE_URI + "/waiting-room/1/2020-02-15T20:00:00").request().post(null);
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        assertEquals(ticket.getToken(), response.readEntity(WaitingRoomTicketDTO.class).getToken());
+    }
+
+    @Test
+    public void testAttemptJoinWaitingRoomWhenNotAuthenticated() {
+        Response response = client.target(WEB_SERVICE_URI + "/waiting-room/1/2020-02-15T20:00:00").request().post(null);
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testAttemptJoinWaitingRoomForWrongDate() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        Response response = client.target(WEB_SERVICE_URI + "/waiting-room/1/2020-02-16T20:00:00").request().post(null);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+
+        response = client.target(WEB_SERVICE_URI + "/waiting-room/1/2020-02-15T20:00:00/unknown").request().get();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testCancelBooking() {
+        // Log in
+        login(client, "testuser", "pa55word");
+        BookingRequestDTO bookingRequest = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("C5", "C6"));
+
+        Response response = client.target(WEB_SERVICE_URI + "/bookings").request().post(Entity.json(bookingRequest));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        URI bookingLocation = response.getLocation();
+        response.close();
+
+        // Another user can't cancel it
+        login(client, "testuser2", "pa55word");
+        response = client.target(bookingLocation).request().delete();
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+        response.close();
+
+        login(client, "testuser", "pa55word");
+        response = client.target(bookingLocation).request().delete();
+        assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
+        response.close();
+
+        // The booking is gone, and its seats are free again
+        response = client.target(bookingLocation).request().get();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+        response.close();
+
+        List<SeatDTO> bookedSeats = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked")
+                .request().get(new GenericType<List<SeatDTO>>() {});
+        assertEquals(0, bookedSeats.size());
+
+        AvailabilitySummaryDTO summary = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00/summary")
+                .request().get(AvailabilitySummaryDTO.class);
+        assertEquals(0, summary.getNumBooked());
+
+        // So they can be booked again
+        response = client.target(WEB_SERVICE_URI + "/bookings").request().post(Entity.json(bookingRequest));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testAttemptCancelNonexistentBooking() {
+        Response response = client.target(WEB_SERVICE_URI + "/bookings/9999").request().delete();
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
+        response.close();
+
+        login(client, "testuser", "pa55word");
+        response = client.target(WEB_SERVICE_URI + "/bookings/9999").request().delete();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testSubscriptionsNotifiedByThreshold() throws ExecutionException, InterruptedException {
+        login(client, "testuser", "pa55word");
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        Future<ConcertInfoNotificationDTO> low = client.target(WEB_SERVICE_URI + "/subscribe/concertInfo").request()
+                .async().post(Entity.json(new ConcertInfoSubscriptionDTO(1, date, 30)), ConcertInfoNotificationDTO.class);
+        Future<ConcertInfoNotificationDTO> high = client.target(WEB_SERVICE_URI + "/subscribe/concertInfo").request()
+                .async().post(Entity.json(new ConcertInfoSubscriptionDTO(1, date, 60)), ConcertInfoNotificationDTO.class);
+
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            // Rows A through D are 40% of the seats, which only reaches the lower threshold
+            login(user2Client, "testuser2", "pa55word");
+            attemptBooking(user2Client, 1, date, 'A', 'D');
+
+            try {
+                assertEquals(72, low.get(2, TimeUnit.SECONDS).getNumSeatsRemaining());
+            } catch (TimeoutException e) {
+                fail("Future took too long to return - probable error.");
+            }
+
+            try {
+                high.get(1, TimeUnit.SECONDS);
+                fail();
+            } catch (TimeoutException e) {
+                // Good!
+            }
+        } finally {
+            user2Client.close();
+        }
+    }
+
+    @Test
+    public void testStreamSeats() throws InterruptedException {
+        LinkedBlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        try (SseEventSource source = SseEventSource
+                .target(client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00/events")).build()) {
+            source.register(events::add);
+            source.open();
+
+            // Every seat is sent on connecting
+            InboundSseEvent event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals("seats", event.getName());
+            SeatAvailabilityDeltaDTO seats = event.readData(SeatAvailabilityDeltaDTO.class, MediaType.APPLICATION_JSON_TYPE);
+            assertEquals(0, seats.getBookedSeats().size());
+            assertEquals(120, seats.getUnbookedSeats().size());
+
+            event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals("summary", event.getName());
+
+            login(client, "testuser", "pa55word");
+            Response response = attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C5", "C6");
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+            // Then the seats that are booked
+            event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals("seats", event.getName());
+            seats = event.readData(SeatAvailabilityDeltaDTO.class, MediaType.APPLICATION_JSON_TYPE);
+            assertEquals(Arrays.asList("C5", "C6"),
+                    seats.getBookedSeats().stream().map(SeatDTO::getLabel).sorted().collect(Collectors.toList()));
+
+            event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals("summary", event.getName());
+            assertEquals(2, event.readData(AvailabilitySummaryDTO.class, MediaType.APPLICATION_JSON_TYPE).getNumBooked());
+        }
+    }
+
+    @Test
+    public void testAttemptStreamSeatsForWrongDate() {
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2030-02-15T20:00:00/events").request().get();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void testGetMetrics() throws InterruptedException {
+        ServiceMetricsDTO before = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+
+        // Each booking queues a subscription check on the notification executor
+        login(client, "testuser", "pa55word");
+        Response response = attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "A1");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        ServiceMetricsDTO after = before;
+        for (int i = 0; i < 20 && after.getNotificationsCompleted() + after.getNotificationsRunOnCaller()
+                <= before.getNotificationsCompleted() + before.getNotificationsRunOnCaller(); i++) {
+            Thread.sleep(100);
+            after = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+        }
+
+        assertTrue(after.getNotificationsCompleted() + after.getNotificationsRunOnCaller()
+                > before.getNotificationsCompleted() + before.getNotificationsRunOnCaller());
+        assertTrue(after.getNotificationQueueDepth() >= 0);
+        assertTrue(after.getAsyncBookingQueueDepth() >= 0);
+    }
+
+    @Test
+    public void testNotificationsCoalesced() throws InterruptedException, ExecutionException {
+        ServiceMetricsDTO before = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+
+        // A burst of bookings for the same concert date
+        login(client, "testuser", "pa55word");
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        List<Future<Response>> responses = new ArrayList<>();
+        for (int seat = 1; seat <= 12; seat++) {
+            BookingRequestDTO bookingRequest = new BookingRequestDTO(1, date, Collections.singletonList("B" + seat));
+            responses.add(client.target(WEB_SERVICE_URI + "/bookings").request().async().post(Entity.json(bookingRequest)));
+        }
+        for (Future<Response> response : responses) {
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.get().getStatus());
+        }
+
+        ServiceMetricsDTO after = before;
+        for (int i = 0; i < 20 && after.getNotificationEvaluations() == before.getNotificationEvaluations(); i++) {
+            Thread.sleep(100);
+            after = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+        }
+
+        // Every booking is reported, but the concert date is looked at no more often than that
+        long triggers = after.getNotificationTriggers() - before.getNotificationTriggers();
+        long evaluations = after.getNotificationEvaluations() - before.getNotificationEvaluations();
+        assertEquals(12, triggers);
+        assertTrue(evaluations >= 1 && evaluations <= triggers);
+    }
+
+    @Test
+    public void testLiveSubscribersCounted() throws InterruptedException, ExecutionException, TimeoutException {
+        login(client, "testuser", "pa55word");
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        Future<ConcertInfoNotificationDTO> future = client.target(WEB_SERVICE_URI + "/subscribe/concertInfo").request()
+                .async().post(Entity.json(new ConcertInfoSubscriptionDTO(1, date, 30)), ConcertInfoNotificationDTO.class);
+        assertEquals(1, awaitLiveSubscribers(1));
+
+        // A subscriber that has been notified is no longer counted
+        attemptBooking(client, 1, date, 'A', 'D');
+        future.get(2, TimeUnit.SECONDS);
+        assertEquals(0, awaitLiveSubscribers(0));
+    }
+
+    @Test
+    public void testBookingEventsBatched() throws InterruptedException, ExecutionException {
+        ServiceMetricsDTO before = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+
+        // A burst of bookings is shared with other service instances in fewer batches than bookings
+        login(client, "testuser", "pa55word");
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        List<Future<Response>> responses = new ArrayList<>();
+        for (int seat = 1; seat <= 12; seat++) {
+            BookingRequestDTO bookingRequest = new BookingRequestDTO(1, date, Collections.singletonList("C" + seat));
+            responses.add(client.target(WEB_SERVICE_URI + "/bookings").request().async().post(Entity.json(bookingRequest)));
+        }
+        for (Future<Response> response : responses) {
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.get().getStatus());
+        }
+
+        ServiceMetricsDTO after = before;
+        for (int i = 0; i < 20 && after.getBookingEventsPublished() - before.getBookingEventsPublished() < 12; i++) {
+            Thread.sleep(100);
+            after = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+        }
+
+        assertEquals(12, after.getBookingEventsPublished() - before.getBookingEventsPublished());
+        long batches = after.getBookingEventBatchesPublished() - before.getBookingEventBatchesPublished();
+        assertTrue(batches >= 1 && batches < 12);
+        assertEquals(before.getBookingEventsReceived(), after.getBookingEventsReceived());
+    }
+
+    @Test
+    public void testAuthTokenCached() {
+        ServiceMetricsDTO before = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+
+        // Logging in remembers the token, so later requests with it don't look it up
+        String firstToken = login(client, "testuser", "pa55word").getCookies().get("auth").getValue();
+        for (int i = 0; i < 3; i++) {
+            Response response = client.target(WEB_SERVICE_URI + "/bookings").request().get();
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        }
+
+        ServiceMetricsDTO after = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class);
+        assertEquals(3, after.getAuthTokenCacheHits() - before.getAuthTokenCacheHits());
+        assertEquals(before.getAuthTokenCacheMisses(), after.getAuthTokenCacheMisses());
+
+        // Logging in again reissues the token, so the first one stops working
+        String secondToken = login(client, "testuser", "pa55word").getCookies().get("auth").getValue();
+        assertNotEquals(firstToken, secondToken);
+
+        Client otherClient = ClientBuilder.newClient();
+        try {
+            Response response = otherClient.target(WEB_SERVICE_URI + "/bookings").request()
+                    .cookie("auth", firstToken).get();
+            assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
+
+            response = otherClient.target(WEB_SERVICE_URI + "/bookings").request().cookie("auth", secondToken).get();
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        } finally {
+            otherClient.close();
+        }
+    }
+
     // Helper methods
     // --------------------------------------------------------------------
 
+    /**
+     * Polls the service's metrics until the number of live subscribers is as expected, or a couple of seconds pass.
+     */
+    private int awaitLiveSubscribers(int expected) throws InterruptedException {
+        int live = -1;
+        for (int i = 0; i < 20 && live != expected; i++) {
+            if (i > 0)
+                Thread.sleep(100);
+            live = client.target(WEB_SERVICE_URI + "/metrics").request().get(ServiceMetricsDTO.class).getLiveSubscribers();
+        }
+        return live;
+    }
+
     /**
      * Helper method to log us in.
      */
@@ -0,0 +1,178 @@
+package se325.assignment01.concert.service;
+
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.services.BookingWriter;
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.ConcertUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the pessimistic and optimistic ways of writing a booking when many requests fight over the same seats.
+ * The in-memory seat claims are bypassed, so the database is the only thing stopping double bookings:
+ * <ul>
+ *     <li>pessimistic: the booking path from before seats were claimed in memory, which locks the seats with
+ *     PESSIMISTIC_WRITE</li>
+ *     <li>optimistic: {@link BookingWriter#writeOptimistic(User, BookingRequestDTO)}, which relies on the seats'
+ *     versions and retries clashes</li>
+ * </ul>
+ * Several threads book random pairs of seats in the same few rows of one performance. Afterwards the booked seats
+ * in the database are counted, to check no seat was booked twice.
+ * Not a test, run it with a main method: ContentionBenchmark [threads] [requestsPerThread]. It uses (and wipes) the
+ * same database as the web service, so don't run it while the service is running.
+ */
+public class ContentionBenchmark {
+
+    private static final long CONCERT_ID = 1;
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+    private static final char[] ROWS = {'A', 'B', 'C', 'D'};
+    private static final int SEATS_PER_ROW = 12;
+
+    private interface BookingPath {
+        Booking book(User user, BookingRequestDTO bookingDTO);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // Warm up
+        run("pessimistic", ContentionBenchmark::bookWithLocks, threads, requests);
+        run("optimistic", BookingWriter::writeOptimistic, threads, requests);
+
+        System.out.println(run("pessimistic", ContentionBenchmark::bookWithLocks, threads, requests));
+        long retries = BookingWriter.getOptimisticRetries();
+        System.out.println(run("optimistic", BookingWriter::writeOptimistic, threads, requests)
+                + " retries=" + (BookingWriter.getOptimisticRetries() - retries));
+    }
+
+    private static String run(String name, BookingPath path, int threads, int requests) throws InterruptedException {
+        PersistenceManager.instance().reset();
+        ConcertUtils.initConcerts();
+
+        User user;
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            user = em.find(User.class, 1L);
+        } finally {
+            em.close();
+        }
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long[][] latencies = new long[threads][requests];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long[] threadLatencies = latencies[t];
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int i = 0; i < requests; i++) {
+                    char row = ROWS[random.nextInt(ROWS.length)];
+                    int seat = 1 + random.nextInt(SEATS_PER_ROW - 1);
+                    BookingRequestDTO bookingDTO = new BookingRequestDTO(CONCERT_ID, DATE,
+                            Arrays.asList("" + row + seat, "" + row + (seat + 1)));
+
+                    long begin = System.nanoTime();
+                    try {
+                        if (path.book(user, bookingDTO) != null)
+                            booked.incrementAndGet();
+                        else
+                            conflicts.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                    threadLatencies[i] = System.nanoTime() - begin;
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long bookedSeats;
+        em = PersistenceManager.instance().createEntityManager();
+        try {
+            bookedSeats = em.createQuery("select count(s) from Seat s where s.date = :date and s.isBooked = true", Long.class)
+                    .setParameter("date", DATE)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+        if (bookedSeats != 2L * booked.get())
+            throw new IllegalStateException(name + " booked " + bookedSeats + " seats for " + booked.get() + " bookings");
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return String.format("%-12s threads=%d requests=%d booked=%d conflicts=%d errors=%d throughput=%.0f/s" +
+                        " mean=%.1fms p99=%.1fms", name, threads, all.length, booked.get(), conflicts.get(), errors.get(),
+                all.length / (elapsed / 1e9), Arrays.stream(all).average().orElse(0) / 1e6,
+                all[Math.min(all.length - 1, (int) (all.length * 0.99))] / 1e6);
+    }
+
+    // The booking path before seats were claimed in memory. Also the baseline of BookingPathBenchmark
+    static Booking bookWithLocks(User user, BookingRequestDTO bookingDTO) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Concert concert = em.find(Concert.class, bookingDTO.getConcertId(), LockModeType.PESSIMISTIC_READ);
+            if (concert == null || !concert.getDates().contains(bookingDTO.getDate()))
+                return null;
+            em.getTransaction().commit();
+
+            em.getTransaction().begin();
+            List<Seat> bookingSeats = em.createQuery("select s from Seat s where s.label in :label" +
+                    " AND s.date = :date AND s.isBooked = :target", Seat.class)
+                    .setParameter("label", bookingDTO.getSeatLabels())
+                    .setParameter("date", bookingDTO.getDate())
+                    .setParameter("target", false)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList();
+            if (bookingSeats.size() != bookingDTO.getSeatLabels().size())
+                return null;
+
+            for (Seat s : bookingSeats) {
+                s.setBooked(true);
+                em.merge(s);
+            }
+            em.getTransaction().commit();
+
+            em.getTransaction().begin();
+            Booking booking = new Booking(bookingDTO.getConcertId(), bookingDTO.getDate(), new HashSet<>(bookingSeats));
+            booking.setUser(user);
+            em.persist(booking);
+            em.getTransaction().commit();
+            return booking;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().commit();
+            em.close();
+        }
+    }
+}
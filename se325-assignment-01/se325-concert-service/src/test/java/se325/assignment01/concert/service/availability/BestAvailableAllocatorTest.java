@@ -0,0 +1,111 @@
+package se325.assignment01.concert.service.availability;
+
+import org.junit.Before;
+import org.junit.Test;
+import se325.assignment01.concert.service.util.VenueLayout;
+import se325.assignment01.concert.service.util.VenueLayouts;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests choosing the best available seats in the gold band of the theatre concert 1 is held in, which is rows F
+ * to H of 12 seats each.
+ */
+public class BestAvailableAllocatorTest {
+
+    private static final int ROW_F = 60;
+    private static final int ROW_G = 72;
+
+    private VenueLayout theatre;
+    private PerformanceSeats performance;
+    private int gold;
+
+    @Before
+    public void setUp() {
+        theatre = VenueLayouts.instance().forConcert(1);
+        performance = new PerformanceSeats(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), theatre);
+        gold = theatre.priceBandIndexOf("Gold Seating");
+    }
+
+    @Test
+    public void testRunStarts() {
+        // Seats 0 to 3 and 5 to 7 are free
+        long free = 0b1110_1111L;
+
+        assertEquals(free, BestAvailableAllocator.runStarts(free, 1));
+        assertEquals(0b0110_0111L, BestAvailableAllocator.runStarts(free, 2));
+        assertEquals(0b0010_0011L, BestAvailableAllocator.runStarts(free, 3));
+        assertEquals(0b0000_0001L, BestAvailableAllocator.runStarts(free, 4));
+        assertEquals(0, BestAvailableAllocator.runStarts(free, 5));
+
+        // A whole row of the longest length allowed
+        assertEquals(1L, BestAvailableAllocator.runStarts(-1L, Long.SIZE));
+        assertEquals(0, BestAvailableAllocator.runStarts(-1L >>> 1, Long.SIZE));
+    }
+
+    @Test
+    public void testPreferCentreOfFrontRow() {
+        assertArrayEquals(seats(ROW_F + 4, ROW_F + 5, ROW_F + 6, ROW_F + 7),
+                BestAvailableAllocator.allocate(performance, gold, 4));
+
+        // The chosen seats are claimed
+        for (int seatIndex = ROW_F + 4; seatIndex <= ROW_F + 7; seatIndex++) {
+            assertTrue(performance.isBooked(seatIndex));
+        }
+    }
+
+    @Test
+    public void testPreferRunNearestCentre() {
+        // F5 to F8 are taken, leaving runs either side. Both are as near the centre, so the first is chosen
+        book(ROW_F + 4, ROW_F + 5, ROW_F + 6, ROW_F + 7);
+
+        assertArrayEquals(seats(ROW_F + 2, ROW_F + 3), BestAvailableAllocator.allocate(performance, gold, 2));
+    }
+
+    @Test
+    public void testMoveBackWhenFrontRowHasNoRun() {
+        // Every other seat in row F is taken
+        for (int seatIndex = ROW_F; seatIndex < ROW_G; seatIndex += 2) {
+            book(seatIndex);
+        }
+
+        assertArrayEquals(seats(ROW_G + 5, ROW_G + 6), BestAvailableAllocator.allocate(performance, gold, 2));
+    }
+
+    @Test
+    public void testFallBackToSeatsApart() {
+        // Every other seat in the band is taken, so no two free seats are next to each other
+        for (int seatIndex = ROW_F; seatIndex < ROW_F + theatre.getNumSeats(gold); seatIndex += 2) {
+            book(seatIndex);
+        }
+
+        assertArrayEquals(seats(ROW_F + 1, ROW_F + 3, ROW_F + 5), BestAvailableAllocator.allocate(performance, gold, 3));
+    }
+
+    @Test
+    public void testNotEnoughSeats() {
+        // All but two seats in the band are taken
+        for (int seatIndex = ROW_F; seatIndex < ROW_F + theatre.getNumSeats(gold) - 2; seatIndex++) {
+            book(seatIndex);
+        }
+
+        assertNull(BestAvailableAllocator.allocate(performance, gold, 3));
+        assertEquals(theatre.getNumSeats(gold) - 2, performance.getNumBooked());
+
+        assertNull(BestAvailableAllocator.allocate(performance, gold, 0));
+        assertNull(BestAvailableAllocator.allocate(performance, gold, theatre.getNumSeats(gold) + 1));
+        assertNull(BestAvailableAllocator.allocate(performance, gold, Integer.MAX_VALUE));
+    }
+
+    private void book(int... seatIndexes) {
+        for (int seatIndex : seatIndexes) {
+            performance.markBooked(seatIndex);
+        }
+    }
+
+    private static int[] seats(int... seatIndexes) {
+        return seatIndexes;
+    }
+}
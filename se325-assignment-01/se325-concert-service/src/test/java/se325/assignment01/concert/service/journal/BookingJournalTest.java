@@ -0,0 +1,219 @@
+package se325.assignment01.concert.service.journal;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.ConcertUtils;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link BookingJournal} against the database the service uses, which is reset before each test. Each
+ * test has its own journal file.
+ */
+public class BookingJournalTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+    private static final int SIZE = 64 * 1024;
+
+    // Where the first entry starts, and where the header keeps the position written to the database up to
+    private static final int FIRST_ENTRY = 64;
+    private static final int APPLIED_POSITION_OFFSET = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private User user;
+
+    @Before
+    public void setUp() throws IOException {
+        resetDatabase();
+        file = folder.getRoot().toPath().resolve("bookings.journal");
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            user = em.find(User.class, 1L);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    public void testAppendWritesToDatabase() throws IOException {
+        BookingJournal journal = open(SIZE);
+        Booking booking = journal.append(user, request("A1", "A2"));
+        assertNotNull(booking.getId());
+        assertEquals(2, booking.getSeats().size());
+
+        journal.awaitWritten();
+        assertEquals(List.of(booking.getId()), bookingIds());
+        assertEquals(List.of("A1", "A2"), bookedLabels());
+
+        // Once written there is nothing left to replay
+        BookingJournal reopened = open(SIZE);
+        reopened.replay();
+        assertEquals(List.of(booking.getId()), bookingIds());
+    }
+
+    @Test
+    public void testReplayUnwrittenEntries() throws IOException {
+        BookingJournal journal = open(SIZE);
+        long first = journal.append(user, request("B1")).getId();
+        long second = journal.append(user, request("B2", "B3")).getId();
+        journal.awaitWritten();
+
+        // As if the service had stopped before writing them, and the database had been lost
+        resetDatabase();
+        setAppliedPosition(FIRST_ENTRY);
+
+        BookingJournal reopened = open(SIZE);
+        reopened.replay();
+        assertEquals(List.of(first, second), bookingIds());
+        assertEquals(List.of("B1", "B2", "B3"), bookedLabels());
+
+        // New bookings don't reuse the replayed bookings' IDs
+        Booking next = reopened.append(user, request("B4"));
+        assertTrue(next.getId() > second);
+    }
+
+    @Test
+    public void testIgnoreTornEntry() throws IOException {
+        BookingJournal journal = open(SIZE);
+        long first = journal.append(user, request("C1")).getId();
+        journal.append(user, request("C2"));
+        journal.append(user, request("C3"));
+        journal.awaitWritten();
+
+        resetDatabase();
+        setAppliedPosition(FIRST_ENTRY);
+
+        // Corrupt the second entry's booking, so its checksum no longer matches. It and everything after it is lost
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int firstLength = readInt(channel, FIRST_ENTRY);
+            int second = FIRST_ENTRY + 2 * Integer.BYTES + firstLength;
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), second + 2 * Integer.BYTES);
+        }
+
+        BookingJournal reopened = open(SIZE);
+        reopened.replay();
+        assertEquals(List.of(first), bookingIds());
+        assertEquals(List.of("C1"), bookedLabels());
+    }
+
+    @Test
+    public void testWrapWhenFull() throws IOException {
+        // Room for a dozen or so bookings, so appending these starts from the beginning of the file a few times
+        BookingJournal journal = open(1024);
+        List<String> labels = new ArrayList<>();
+        for (char row = 'D'; row <= 'F'; row++) {
+            for (int seat = 1; seat <= 12; seat++) {
+                labels.add("" + row + seat);
+                journal.append(user, request("" + row + seat));
+            }
+        }
+        journal.awaitWritten();
+
+        assertEquals(1024, Files.size(file));
+        assertEquals(labels.size(), bookingIds().size());
+        labels.sort(null);
+        assertEquals(labels, bookedLabels());
+
+        BookingJournal reopened = open(1024);
+        reopened.replay();
+        assertEquals(labels.size(), bookingIds().size());
+    }
+
+    @Test
+    public void testDeadLetterRejectedBooking() throws IOException {
+        BookingJournal journal = open(SIZE);
+
+        // No such user, so the database will never take the booking
+        User missing = new User();
+        missing.setId(999L);
+        long rejected = journal.append(missing, request("G1")).getId();
+        long accepted = journal.append(user, request("G2")).getId();
+        journal.awaitWritten();
+
+        assertEquals(List.of(accepted), bookingIds());
+        List<JournalEntry> deadLetters = journal.readDeadLetters();
+        assertEquals(1, deadLetters.size());
+        assertEquals(rejected, deadLetters.get(0).getBookingId());
+        assertEquals(999L, deadLetters.get(0).getUserId());
+        assertEquals(List.of("G1"), deadLetters.get(0).getSeatLabels());
+
+        // Later bookings aren't held up
+        long later = journal.append(user, request("G3")).getId();
+        journal.awaitWritten();
+        assertEquals(List.of(accepted, later), bookingIds());
+
+        // Nor replayed again
+        BookingJournal reopened = open(SIZE);
+        reopened.replay();
+        assertEquals(List.of(accepted, later), bookingIds());
+    }
+
+    private BookingJournal open(int size) throws IOException {
+        return new BookingJournal(file, size, false, 2, 10);
+    }
+
+    private void setAppliedPosition(int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES).putInt(position);
+            bytes.flip();
+            channel.write(bytes, APPLIED_POSITION_OFFSET);
+        }
+    }
+
+    private static int readInt(FileChannel channel, int position) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(bytes, position);
+        return bytes.getInt(0);
+    }
+
+    private static void resetDatabase() {
+        PersistenceManager.instance().reset();
+        ConcertUtils.initConcerts();
+    }
+
+    private static BookingRequestDTO request(String... seatLabels) {
+        return new BookingRequestDTO(1, DATE, List.of(seatLabels));
+    }
+
+    private static List<Long> bookingIds() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select b.id from Booking b order by b.id", Long.class).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<String> bookedLabels() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select s.label from Seat s where s.date = :date AND s.isBooked = true" +
+                    " order by s.label", String.class)
+                    .setParameter("date", DATE)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+}
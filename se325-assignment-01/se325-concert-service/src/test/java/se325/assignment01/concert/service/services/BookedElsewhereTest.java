@@ -0,0 +1,157 @@
+package se325.assignment01.concert.service.services;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.util.ConcertUtils;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Tests booking seats that another service instance sharing the database has just booked, before its booking event
+ * has arrived. The other instance's bookings are made by updating the database directly, which is reset before
+ * each test. With lazy seat storage the seats' unique constraint does the same job, see {@link LazySeatStorageTest}.
+ */
+public class BookedElsewhereTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+    private User user;
+    private PerformanceSeats performance;
+
+    @BeforeClass
+    public static void checkStorage() {
+        assumeFalse(ServiceConfig.isLazySeatStorage());
+    }
+
+    @Before
+    public void setUp() {
+        PersistenceManager.instance().reset();
+        ConcertUtils.initConcerts();
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            user = em.find(User.class, 1L);
+        } finally {
+            em.close();
+        }
+        performance = SeatAvailabilityIndex.instance().get(DATE);
+    }
+
+    @Test
+    public void testSeatBookedElsewhereFailsBooking() {
+        markBookedInDatabase("A2");
+
+        int[] seatIndexes = seatIndexes("A1", "A2", "A3");
+        assertTrue(performance.claim(seatIndexes));
+        assertNull(BookingWriter.writeClaimed(user, request("A1", "A2", "A3"), performance, seatIndexes));
+
+        // Nothing written, the free seats released, and the seat booked elsewhere now known to be booked
+        assertEquals(List.of("A2"), bookedLabels());
+        assertEquals(0, countBookings());
+        assertFalse(performance.isBooked(seatIndexes("A1")[0]));
+        assertTrue(performance.isBooked(seatIndexes("A2")[0]));
+        assertFalse(performance.isBooked(seatIndexes("A3")[0]));
+        assertEquals(1, performance.getNumBooked());
+
+        // The other instance's event arriving late doesn't count the seat again
+        performance.recordBookedElsewhere(seatIndexes("A2"));
+        assertEquals(1, performance.getNumBooked());
+    }
+
+    @Test
+    public void testEventForClaimedSeatCountedOnce() {
+        int[] seatIndexes = seatIndexes("B1", "B2");
+        assertTrue(performance.claim(seatIndexes));
+
+        // The other instance books B2 while it is claimed here. Its event can't count a seat claimed for a booking
+        // that may still be made
+        markBookedInDatabase("B2");
+        performance.recordBookedElsewhere(seatIndexes("B2"));
+        assertEquals(0, performance.getNumBooked());
+
+        // Once this booking fails, B2 is counted
+        assertNull(BookingWriter.writeClaimed(user, request("B1", "B2"), performance, seatIndexes));
+        assertFalse(performance.isBooked(seatIndexes("B1")[0]));
+        assertTrue(performance.isBooked(seatIndexes("B2")[0]));
+        assertEquals(1, performance.getNumBooked());
+        assertEquals(performance.getNumBooked(), performance.getNumBooked(
+                performance.getLayout().priceBandAt(seatIndexes("B2")[0])));
+    }
+
+    @Test
+    public void testEventRepeatedCountedOnce() {
+        performance.recordBookedElsewhere(seatIndexes("C1", "C2"));
+        performance.recordBookedElsewhere(seatIndexes("C1", "C2"));
+
+        assertEquals(2, performance.getNumBooked());
+        assertEquals(118, performance.getNumRemaining());
+    }
+
+    @Test
+    public void testBatchSkipsBookingOfSeatBookedElsewhere() {
+        markBookedInDatabase("D2");
+
+        List<BookingRequestDTO> requests = List.of(request("D1", "D2"), request("D3", "D4"));
+        List<Booking> bookings = BookingWriter.writeAll(user, requests);
+
+        assertNull(bookings.get(0));
+        assertNotNull(bookings.get(1));
+        assertEquals(List.of("D2", "D3", "D4"), bookedLabels());
+        assertEquals(1, countBookings());
+    }
+
+    private int[] seatIndexes(String... seatLabels) {
+        return performance.toSeatIndexes(List.of(seatLabels));
+    }
+
+    private static BookingRequestDTO request(String... seatLabels) {
+        return new BookingRequestDTO(1, DATE, List.of(seatLabels));
+    }
+
+    private static void markBookedInDatabase(String label) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("update versioned Seat s set s.isBooked = true where s.label = :label AND s.date = :date")
+                    .setParameter("label", label)
+                    .setParameter("date", DATE)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<String> bookedLabels() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select s.label from Seat s where s.date = :date AND s.isBooked = true" +
+                    " order by s.label", String.class)
+                    .setParameter("date", DATE)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long countBookings() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select count(b) from Booking b", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package se325.assignment01.concert.service.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.util.ConcertUtils;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link BookingSequencer} against the database the service uses, which is reset before each test.
+ */
+public class BookingSequencerTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+    private User user;
+    private PerformanceSeats performance;
+
+    @Before
+    public void setUp() {
+        PersistenceManager.instance().reset();
+        ConcertUtils.initConcerts();
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            user = em.find(User.class, 1L);
+        } finally {
+            em.close();
+        }
+        performance = SeatAvailabilityIndex.instance().get(DATE);
+    }
+
+    @After
+    public void tearDown() {
+        BookingSequencer.stopAll();
+    }
+
+    @Test
+    public void testSameSeatsBookedOnce() throws Exception {
+        CompletableFuture<Booking> first = submit("A1", "A2");
+        CompletableFuture<Booking> second = submit("A2", "A3");
+
+        // Processed in the order they were queued
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        assertNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, performance.getNumBooked());
+        assertEquals(1, countBookings());
+    }
+
+    @Test
+    public void testCancelledBookingIsNeverMade() throws Exception {
+        List<CompletableFuture<Booking>> results = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        for (char row = 'A'; row <= 'J'; row++) {
+            for (int seat = 1; seat <= 12; seat++) {
+                labels.add("" + row + seat);
+                results.add(submit("" + row + seat));
+            }
+        }
+
+        // Cancelling races with the writer: a cancelled booking is never made, one that couldn't be cancelled is
+        int made = 0;
+        for (int i = 0; i < results.size(); i++) {
+            CompletableFuture<Booking> result = results.get(i);
+            if (result.cancel(false)) {
+                assertTrue(result.isCancelled());
+            } else {
+                assertNotNull(result.get(5, TimeUnit.SECONDS));
+                made++;
+            }
+        }
+
+        // Wait for the writer to finish the bookings it took
+        BookingSequencer.stopAll();
+        for (int i = 0; i < results.size(); i++) {
+            int seatIndex = performance.toSeatIndexes(List.of(labels.get(i)))[0];
+            assertEquals(!results.get(i).isCancelled(), performance.isBooked(seatIndex));
+        }
+        assertEquals(made, performance.getNumBooked());
+        assertEquals(made, countBookings());
+    }
+
+    @Test
+    public void testTakenBookingCannotBeCancelled() throws Exception {
+        CompletableFuture<Booking> result = submit("B1");
+        assertNotNull(result.get(5, TimeUnit.SECONDS));
+
+        assertFalse(result.cancel(false));
+        assertFalse(result.isCancelled());
+    }
+
+    @Test
+    public void testRestartsAfterStopping() throws Exception {
+        BookingSequencer before = BookingSequencer.forPerformance(DATE);
+        assertNotNull(submit("C1").get(5, TimeUnit.SECONDS));
+
+        BookingSequencer.stopAll();
+
+        BookingSequencer after = BookingSequencer.forPerformance(DATE);
+        assertNotSame(before, after);
+        assertNotNull(submit("C2").get(5, TimeUnit.SECONDS));
+        assertEquals(2, performance.getNumBooked());
+    }
+
+    @Test
+    public void testFailedBookingOnlyFailsItself() throws Exception {
+        // No such user, so the database will never take this booking. Queued among others, so it is likely to be
+        // committed in the same transaction as some of them
+        User missing = new User();
+        missing.setId(999L);
+
+        List<CompletableFuture<Booking>> results = new ArrayList<>();
+        for (int seat = 1; seat <= 12; seat++) {
+            results.add(seat == 6 ? submit(missing, "D6") : submit("D" + seat));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            if (i == 5) {
+                try {
+                    results.get(i).get(5, TimeUnit.SECONDS);
+                    fail("Booking by a missing user was made");
+                } catch (ExecutionException expected) {
+                    // The booking failed, and its seat was released
+                }
+            } else {
+                assertNotNull(results.get(i).get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertFalse(performance.isBooked(performance.toSeatIndexes(List.of("D6"))[0]));
+        assertEquals(11, performance.getNumBooked());
+        assertEquals(11, countBookings());
+    }
+
+    private CompletableFuture<Booking> submit(String... seatLabels) {
+        return submit(user, seatLabels);
+    }
+
+    private CompletableFuture<Booking> submit(User user, String... seatLabels) {
+        List<String> labels = Arrays.asList(seatLabels);
+        return BookingSequencer.forPerformance(DATE).submit(user, new BookingRequestDTO(1, DATE, labels),
+                performance, performance.toSeatIndexes(labels));
+    }
+
+    private long countBookings() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select count(b) from Booking b", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package se325.assignment01.concert.service.services;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.util.ConcertUtils;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests the bulk booking engine, which marks a booking's seats with one conditional UPDATE, against the database
+ * the service uses. Run by its own surefire execution with concert.booking.engine=bulk (see the service's pom.xml).
+ */
+public class BulkUpdateTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+    private User user;
+    private PerformanceSeats performance;
+
+    @BeforeClass
+    public static void checkEngine() {
+        assumeTrue(ServiceConfig.isBulkUpdateEnabled());
+    }
+
+    @Before
+    public void setUp() {
+        PersistenceManager.instance().reset();
+        ConcertUtils.initConcerts();
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            user = em.find(User.class, 1L);
+        } finally {
+            em.close();
+        }
+        performance = SeatAvailabilityIndex.instance().get(DATE);
+    }
+
+    @Test
+    public void testBookFreeSeats() {
+        Booking booking = BookingWriter.writeConditional(user, request("A1", "A2", "A3"));
+
+        assertNotNull(booking);
+        assertEquals(3, booking.getSeats().size());
+        assertEquals(List.of("A1", "A2", "A3"), bookedLabels());
+    }
+
+    @Test
+    public void testFailWhenSeatAlreadyBooked() {
+        // Booked in the database but not in this instance's index, as when another instance has just booked it
+        markBookedInDatabase("B2");
+
+        assertNull(BookingWriter.writeConditional(user, request("B1", "B2", "B3")));
+
+        // Rolled back, so the seats that were free are still free
+        assertEquals(List.of("B2"), bookedLabels());
+        assertEquals(0, countBookings());
+    }
+
+    @Test
+    public void testFailWhenSeatMissing() {
+        assertNull(BookingWriter.writeConditional(user, request("C1", "Z99")));
+        assertEquals(List.of(), bookedLabels());
+    }
+
+    @Test
+    public void testFailedUpdateReleasesClaim() {
+        markBookedInDatabase("D2");
+
+        int[] seatIndexes = performance.toSeatIndexes(List.of("D1", "D2", "D3"));
+        assertTrue(performance.claim(seatIndexes));
+        assertNull(BookingWriter.writeClaimed(user, request("D1", "D2", "D3"), performance, seatIndexes));
+
+        // The seats that were free are released, and the seat booked elsewhere is now known to be booked
+        assertFalse(performance.isBooked(seatIndexes[0]));
+        assertTrue(performance.isBooked(seatIndexes[1]));
+        assertFalse(performance.isBooked(seatIndexes[2]));
+        assertEquals(1, performance.getNumBooked());
+
+        // The seats that were free can be claimed and booked again
+        int[] freeSeats = performance.toSeatIndexes(List.of("D1", "D3"));
+        assertTrue(performance.claim(freeSeats));
+        assertNotNull(BookingWriter.writeClaimed(user, request("D1", "D3"), performance, freeSeats));
+        assertEquals(3, performance.getNumBooked());
+    }
+
+    private static BookingRequestDTO request(String... seatLabels) {
+        return new BookingRequestDTO(1, DATE, List.of(seatLabels));
+    }
+
+    private static void markBookedInDatabase(String label) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("update versioned Seat s set s.isBooked = true where s.label = :label AND s.date = :date")
+                    .setParameter("label", label)
+                    .setParameter("date", DATE)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<String> bookedLabels() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select s.label from Seat s where s.date = :date AND s.isBooked = true" +
+                    " order by s.label", String.class)
+                    .setParameter("date", DATE)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long countBookings() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select count(b) from Booking b", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package se325.assignment01.concert.service.services;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import se325.assignment01.concert.common.dto.BookingOutcomeDTO;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.common.dto.UserDTO;
+import se325.assignment01.concert.common.types.BookingOutcome;
+import se325.assignment01.concert.service.availability.PerformanceSeats;
+import se325.assignment01.concert.service.availability.SeatAvailabilityIndex;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.util.ConcertUtils;
+import se325.assignment01.concert.service.util.ServiceConfig;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests booking with lazy seat storage, where a seat's row is only written when it is booked, against the database
+ * the service uses. Run by its own surefire execution with concert.seats.storage=lazy (see the service's pom.xml).
+ */
+public class LazySeatStorageTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+    private static final int NUM_THREADS = 8;
+
+    private User user;
+    private PerformanceSeats performance;
+
+    @BeforeClass
+    public static void checkStorage() {
+        assumeTrue(ServiceConfig.isLazySeatStorage());
+    }
+
+    @Before
+    public void setUp() {
+        PersistenceManager.instance().reset();
+        ConcertUtils.initConcerts();
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            user = em.find(User.class, 1L);
+        } finally {
+            em.close();
+        }
+        performance = SeatAvailabilityIndex.instance().get(DATE);
+    }
+
+    @Test
+    public void testOnlyBookedSeatsStored() {
+        assertEquals(0, countSeats());
+        assertEquals(120, performance.getNumRemaining());
+
+        assertNotNull(BookingWriter.write(user, request("A1", "A2")));
+        assertEquals(2, countSeats());
+    }
+
+    @Test
+    public void testConcurrentInsertsOfSameSeat() throws Exception {
+        // Bypasses the in-memory claim, as when the bookings are made on different service instances, so only the
+        // seats' unique constraint stops the seat being written twice
+        List<Booking> bookings = race(() -> BookingWriter.write(user, request("B5", "B6")));
+
+        assertEquals(1, bookings.stream().filter(b -> b != null).count());
+        assertEquals(2, countSeats());
+        assertEquals(1, countBookings());
+    }
+
+    @Test
+    public void testConcurrentClaimedBookingsOfSameSeat() throws Exception {
+        int[] seatIndexes = performance.toSeatIndexes(List.of("C1"));
+        List<Booking> bookings = race(() -> performance.claim(seatIndexes)
+                ? BookingWriter.writeClaimed(user, request("C1"), performance, seatIndexes)
+                : null);
+
+        assertEquals(1, bookings.stream().filter(b -> b != null).count());
+        assertEquals(1, performance.getNumBooked());
+        assertEquals(1, countSeats());
+    }
+
+    @Test
+    public void testCancelDeletesSeats() {
+        Booking booking = BookingWriter.write(user, request("D1", "D2"));
+        assertNotNull(booking);
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            BookingWriter.delete(em, em.find(Booking.class, booking.getId()));
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        assertEquals(0, countSeats());
+
+        // The seats can be booked again
+        assertNotNull(BookingWriter.write(user, request("D1", "D2")));
+    }
+
+    @Test
+    public void testBatchClashFailsOnlyItsBooking() {
+        // Another service instance books E2, and this instance hasn't heard about it yet
+        assertNotNull(BookingWriter.write(user, request("E2")));
+
+        ConcertResource resource = new ConcertResource();
+        Cookie cookie = resource.login(new UserDTO("testuser", "pa55word")).getCookies().get("auth");
+        Response response = resource.createBookings(cookie, null,
+                List.of(request("E1"), request("E2", "E3"), request("E4", "E5")));
+
+        // The batch's transaction fails on E2's unique constraint, so each booking is written on its own
+        @SuppressWarnings("unchecked")
+        List<BookingOutcomeDTO> outcomes = (List<BookingOutcomeDTO>) response.getEntity();
+        assertEquals(BookingOutcome.Booked, outcomes.get(0).getOutcome());
+        assertEquals(BookingOutcome.SeatsUnavailable, outcomes.get(1).getOutcome());
+        assertEquals(BookingOutcome.Booked, outcomes.get(2).getOutcome());
+
+        assertEquals(3, countBookings());
+        assertEquals(4, countSeats());
+        assertTrue(performance.isBooked(performance.getLayout().seatIndexOf("E2")));
+        assertFalse(performance.isBooked(performance.getLayout().seatIndexOf("E3")));
+    }
+
+    // Runs the booking on several threads at once
+    private static List<Booking> race(Callable<Booking> booking) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(NUM_THREADS);
+        ExecutorService threads = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            List<Future<Booking>> results = new ArrayList<>();
+            for (int i = 0; i < NUM_THREADS; i++) {
+                results.add(threads.submit(() -> {
+                    start.await();
+                    return booking.call();
+                }));
+            }
+
+            List<Booking> bookings = new ArrayList<>();
+            for (Future<Booking> result : results) {
+                bookings.add(result.get());
+            }
+            return bookings;
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private static BookingRequestDTO request(String... seatLabels) {
+        return new BookingRequestDTO(1, DATE, List.of(seatLabels));
+    }
+
+    private static long countSeats() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select count(s) from Seat s", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long countBookings() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return em.createQuery("select count(b) from Booking b", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
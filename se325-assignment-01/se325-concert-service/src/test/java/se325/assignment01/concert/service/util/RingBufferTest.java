@@ -0,0 +1,112 @@
+package se325.assignment01.concert.service.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+    @Test
+    public void testDrainInOfferOrder() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertEquals(5, buffer.size());
+
+        List<Integer> items = new ArrayList<>();
+        assertEquals(5, buffer.drainTo(items, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4), items);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testDrainAtMostMaxItems() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> items = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(items, 3));
+        assertEquals(List.of(0, 1, 2), items);
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    public void testOfferFailsWhenFull() {
+        // Rounded up to a power of two
+        RingBuffer<Integer> buffer = new RingBuffer<>(5);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(8));
+
+        List<Integer> items = new ArrayList<>();
+        buffer.drainTo(items, 1);
+        assertTrue(buffer.offer(8));
+        assertFalse(buffer.offer(9));
+    }
+
+    @Test
+    public void testWrapAround() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(buffer.offer(i));
+            if (i % 3 == 2)
+                buffer.drainTo(items, 4);
+        }
+        buffer.drainTo(items, 4);
+
+        assertEquals(100, items.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) items.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int numProducers = 4;
+        int itemsEach = 20000;
+        RingBuffer<long[]> buffer = new RingBuffer<>(64);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < numProducers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < itemsEach; i++) {
+                    while (!buffer.offer(new long[]{producer, i}))
+                        Thread.yield();
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        // Every item arrives once, and each producer's items arrive in the order it offered them
+        long[] next = new long[numProducers];
+        int received = 0;
+        boolean outOfOrder = false;
+        List<long[]> items = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 30000;
+        while (received < numProducers * itemsEach && System.currentTimeMillis() < deadline) {
+            items.clear();
+            received += buffer.drainTo(items, 16);
+            for (long[] item : items) {
+                if (item[1] != next[(int) item[0]]++)
+                    outOfOrder = true;
+            }
+        }
+
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        assertEquals(numProducers * itemsEach, received);
+        assertFalse(outOfOrder);
+        assertEquals(0, buffer.size());
+    }
+}
@@ -0,0 +1,165 @@
+package se325.assignment01.concert.service.util;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VenueLayoutTest {
+
+    @Test
+    public void testParseTheatreLabels() {
+        VenueLayout theatre = VenueLayouts.instance().get("theatre");
+        assertEquals(120, theatre.getNumSeats());
+
+        assertEquals(0, theatre.seatIndexOf("A1"));
+        assertEquals(11, theatre.seatIndexOf("A12"));
+        assertEquals(12, theatre.seatIndexOf("B1"));
+        assertEquals(119, theatre.seatIndexOf("J12"));
+
+        int seatId = theatre.seatIdOf("C5");
+        assertEquals(0, VenueLayout.sectionOf(seatId));
+        assertEquals(2, VenueLayout.rowOf(seatId));
+        assertEquals(5, VenueLayout.seatNumOf(seatId));
+    }
+
+    @Test
+    public void testLabelsRoundTrip() {
+        for (String venue : List.of("theatre", "arena")) {
+            VenueLayout layout = VenueLayouts.instance().get(venue);
+            for (int seatIndex = 0; seatIndex < layout.getNumSeats(); seatIndex++) {
+                String label = layout.labelAt(seatIndex);
+                assertEquals(label, seatIndex, layout.seatIndexOf(label));
+                assertEquals(seatIndex, layout.seatIndexOf(layout.seatIdAt(seatIndex)));
+            }
+        }
+    }
+
+    @Test
+    public void testRejectLabelsOutOfRange() {
+        VenueLayout theatre = VenueLayouts.instance().get("theatre");
+
+        // Rows past J, seats past 12, and seat 0
+        for (String label : new String[]{"K1", "AA1", "A13", "A65", "A0", "A01", "J100"}) {
+            assertEquals(label, -1, theatre.seatIdOf(label));
+            assertEquals(label, -1, theatre.seatIndexOf(label));
+        }
+    }
+
+    @Test
+    public void testRejectMalformedLabels() {
+        VenueLayout theatre = VenueLayouts.instance().get("theatre");
+
+        for (String label : new String[]{"", "A", "1", "a1", "A1x", "A-1", "1A", "A 1", "FLOOR-A1",
+                "A99999999999999999999", "ZZZZZZZZZZZZZZ1"}) {
+            assertEquals(label, -1, theatre.seatIdOf(label));
+        }
+        assertEquals(-1, theatre.seatIdOf(null));
+    }
+
+    @Test
+    public void testArenaSections() {
+        VenueLayout arena = VenueLayouts.instance().get("arena");
+
+        // A floor of 40 rows of 50, ten lower sections of 25 rows of 30, twenty upper sections of 20 rows of 30
+        assertEquals(40 * 50 + 10 * 25 * 30 + 20 * 20 * 30, arena.getNumSeats());
+
+        assertEquals(0, arena.seatIndexOf("FLOOR-A1"));
+        assertEquals(1999, arena.seatIndexOf("FLOOR-AN50"));
+        assertEquals(2000, arena.seatIndexOf("101-A1"));
+        assertEquals(2000 + 25 * 30 - 1, arena.seatIndexOf("101-Y30"));
+        assertEquals(2000 + 25 * 30, arena.seatIndexOf("102-A1"));
+        assertEquals(arena.getNumSeats() - 1, arena.seatIndexOf("220-T30"));
+
+        int seatId = arena.seatIdOf("103-B7");
+        assertEquals(3, VenueLayout.sectionOf(seatId));
+        assertEquals(1, VenueLayout.rowOf(seatId));
+        assertEquals(7, VenueLayout.seatNumOf(seatId));
+        assertEquals("103-B7", arena.labelOf(seatId));
+
+        // Each section has its own bounds, and there is no unnamed section
+        for (String label : new String[]{"FLOOR-AO1", "FLOOR-A51", "101-Z1", "101-A31", "201-U1", "221-A1",
+                "A1", "-A1", "FLOOR-", "FLOOR--A1"}) {
+            assertEquals(label, -1, arena.seatIdOf(label));
+        }
+    }
+
+    @Test
+    public void testArenaPriceBands() {
+        VenueLayout arena = VenueLayouts.instance().get("arena");
+
+        // Bands shared by several sections are merged
+        assertEquals(4, arena.getPriceBands().length);
+        int premium = arena.priceBandIndexOf("Lower Bowl Premium");
+        assertEquals(100, arena.getPriceBands()[premium].numRows);
+        assertEquals(100 * 30, arena.getNumSeats(premium));
+        assertEquals(100, arena.rowsOfBand(premium).length);
+
+        assertEquals(premium, arena.priceBandAt(arena.seatIndexOf("105-J30")));
+        assertEquals(arena.priceBandIndexOf("Lower Bowl"), arena.priceBandAt(arena.seatIndexOf("105-K1")));
+        assertEquals(0, new BigDecimal(70).compareTo(arena.priceAt(arena.seatIndexOf("210-C3"))));
+        assertEquals(-1, arena.priceBandIndexOf("Platinum Seating"));
+    }
+
+    @Test
+    public void testSeatIdPacking() {
+        int seatId = VenueLayout.seatId(255, 1023, 64);
+        assertEquals(255, VenueLayout.sectionOf(seatId));
+        assertEquals(1023, VenueLayout.rowOf(seatId));
+        assertEquals(64, VenueLayout.seatNumOf(seatId));
+
+        seatId = VenueLayout.seatId(0, 0, 1);
+        assertEquals(0, VenueLayout.sectionOf(seatId));
+        assertEquals(0, VenueLayout.rowOf(seatId));
+        assertEquals(1, VenueLayout.seatNumOf(seatId));
+    }
+
+    @Test
+    public void testRowsUpToMaxSeats() {
+        VenueLayout layout = layout(section("", VenueLayout.MAX_SEATS_PER_ROW, 2));
+        assertEquals(2 * VenueLayout.MAX_SEATS_PER_ROW, layout.getNumSeats());
+        assertEquals(VenueLayout.MAX_SEATS_PER_ROW, layout.seatIndexOf("B1"));
+        assertEquals(-1, layout.seatIdOf("A" + (VenueLayout.MAX_SEATS_PER_ROW + 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectRowsOverMaxSeats() {
+        layout(section("", VenueLayout.MAX_SEATS_PER_ROW + 1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectTooManyRows() {
+        layout(section("", 10, 1025));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectDuplicateSections() {
+        new VenueLayout("test", List.of(section("101", 10, 1), section("101", 10, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectBandWithTwoPrices() {
+        VenueLayout.Section front = new VenueLayout.Section("101", 10,
+                List.of(new VenueLayout.PriceBand("Standard", new BigDecimal(50), 1)));
+        VenueLayout.Section back = new VenueLayout.Section("102", 10,
+                List.of(new VenueLayout.PriceBand("Standard", new BigDecimal(60), 1)));
+        new VenueLayout("test", List.of(front, back));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectNoSections() {
+        new VenueLayout("test", Collections.emptyList());
+    }
+
+    private static VenueLayout.Section section(String name, int seatsPerRow, int numRows) {
+        return new VenueLayout.Section(name, seatsPerRow,
+                List.of(new VenueLayout.PriceBand("Standard", new BigDecimal(50), numRows)));
+    }
+
+    private static VenueLayout layout(VenueLayout.Section section) {
+        return new VenueLayout("test", List.of(section));
+    }
+}